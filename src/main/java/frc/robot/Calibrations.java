@@ -1,5 +1,8 @@
 package frc.robot;
 
+import frc.robot.subsystems.arm.ArmCal;
+import frc.robot.subsystems.drive.ModuleConstants;
+
 public final class Calibrations {
   public static final int PLACEHOLDER_INT = 0;
   public static final double PLACEHOLDER_DOUBLE = 0.0;
@@ -7,10 +10,97 @@ public final class Calibrations {
 
   public static final int SPARK_INIT_RETRY_ATTEMPTS = 5;
 
+  /** Wait before the first spark config retry, doubling each retry up to the max */
+  public static final double SPARK_INIT_INITIAL_BACKOFF_SEC = 0.01,
+      SPARK_INIT_MAX_BACKOFF_SEC = 0.2;
+
   public static final class AutoBalance {
-    public static final double CHARGE_STATION_PITCH_DEGREES_TO_NORM_VELOCITY = PLACEHOLDER_DOUBLE,
-        CHARGE_STATION_DEADBAND_NORM_VELOCITY = PLACEHOLDER_DOUBLE;
+    public static final double CHARGE_STATION_PITCH_DEGREES_TO_NORM_VELOCITY = 0.01,
+        CHARGE_STATION_DEADBAND_NORM_VELOCITY = 0.02,
+        CHARGE_STATION_MAX_NORM_VELOCITY = 0.3;
+
+    public static final double SET_X_TIME_LEFT_SECONDS = 1.0;
+
+    /** The charge station counts as level within this, the same tolerance the refs use */
+    public static final double LEVEL_TOLERANCE_DEG = 2.5;
+
+    /**
+     * Stop once the station is predicted to be level within this time, so the robot and station
+     * momentum finish the job instead of carrying it past level. This and the gain above balanced
+     * a simulated seesaw in about 2 s with under 1 degree of overshoot, see the unit test.
+     */
+    public static final double STOP_LEAD_TIME_SEC = 0.8;
+
+    /** Balanced means level and slower than this, held for the settle time */
+    public static final double BALANCED_RATE_DEG_PER_SEC = 4.0, BALANCED_SETTLE_SEC = 0.5;
+  }
+
+  public static final class PowerManagement {
+    /** Keep predicted battery voltage above this, comfortably over the RIO's 6.8V brownout */
+    public static final double MIN_BATTERY_VOLTS = 7.5;
+
+    /** Battery plus wiring resistance, before we've measured it, and the range we accept */
+    public static final double NOMINAL_BATTERY_RESISTANCE_OHMS = 0.015,
+        MIN_BATTERY_RESISTANCE_OHMS = 0.005,
+        MAX_BATTERY_RESISTANCE_OHMS = 0.05;
+
+    /** How much each new resistance measurement moves the estimate, (0,1] */
+    public static final double RESISTANCE_FILTER_GAIN = 0.1;
+
+    /** Current must change by this much in a loop for a resistance measurement */
+    public static final double MIN_CURRENT_STEP_FOR_RESISTANCE_AMPS = 20.0;
+
+    /** Current kept aside for the mechanisms that get priority over driving (arm and steering) */
+    public static final double RESERVED_CURRENT_AMPS =
+        ArmCal.ARM_CURRENT_LIMIT_AMPS + 4 * ModuleConstants.TURNING_MOTOR_CURRENT_LIMIT_AMPS;
+
+    public static final int NUM_DRIVE_MOTORS = 4;
+
+    /** Never limit drive motors below this, or the robot can't get off the line */
+    public static final int MIN_DRIVE_CURRENT_LIMIT_AMPS = 20;
+
+    /** Smallest change in drive current limit we bother sending to the sparks */
+    public static final int CURRENT_LIMIT_STEP_AMPS = 5;
+  }
+
+  public static final class GamePieceTracking {
+    /** Kalman filter noise for the game piece angle, deg^2 and (deg/s^2)^2 */
+    public static final double TX_MEASUREMENT_VARIANCE_DEG_SQ = 1.0,
+        TX_ACCELERATION_VARIANCE_DEG_SQ_PER_SEC_4 = 400.0;
+
+    /** Ignore detections smaller than this, in percent of the image */
+    public static final double MIN_TARGET_AREA_PERCENT = 0.1;
+
+    /** Forget the game piece if it hasn't been seen for this long */
+    public static final double TARGET_TIMEOUT_SEC = 0.25;
+
+    /** Drive assist rotation, [-1,1] of max angular speed per degree off, and the max command */
+    public static final double ASSIST_ROTATION_PER_DEG = 0.015, ASSIST_MAX_ROTATION = 0.5;
+  }
+
+  public static final class TagVision {
+    /** Tags with a higher pose ambiguity than this are ignored */
+    public static final double MAX_AMBIGUITY = 0.7;
+
+    /** Tags closer than this (squared) are weighted as if they were this far */
+    public static final double MIN_WEIGHT_DIST_SQ_METERS = 0.25;
+
+    /** Frames captured longer ago than this are dropped as they arrive */
+    public static final double MAX_FRAME_AGE_SEC = 0.3;
+
+    /**
+     * Latency values count as part of a frame if theirs is the nearest timestamp to the frame's
+     * and within this, under half the time between frames at the limelight's fastest frame rate
+     */
+    public static final double LATENCY_MATCH_TOLERANCE_SEC = 0.005;
+
+    /** Frames waiting for the drive to solve them, more than this are dropped */
+    public static final int FRAME_QUEUE_CAPACITY = 8;
+
+    /** Vision position standard deviation with one tag, it shrinks with more tags */
+    public static final double SINGLE_TAG_XY_STD_DEV_METERS = 0.5;
 
-    public static final double SET_X_TIME_LEFT_SECONDS = PLACEHOLDER_DOUBLE;
+    /** Vision heading is the gyro's, so the pose estimator should ignore it */
+    public static final double HEADING_STD_DEV_RAD = 1e6;
   }
 }
@@ -18,4 +18,14 @@ public final class Constants {
   public static final float PLACEHOLDER_FLOAT = 0;
 
   public static final int NUM_CANDLE_LEDS = PLACEHOLDER_INT;
+
+  /** NetworkTables names of the limelights */
+  public static final String CLAW_LIMELIGHT_TABLE_NAME = "limelight-claw",
+      TAG_LIMELIGHT_TABLE_NAME = "limelight-tag";
+
+  /** Where the tag limelight is on the robot, from the robot center, and which way it points */
+  public static final double TAG_LIMELIGHT_FORWARD_METERS = PLACEHOLDER_DOUBLE,
+      TAG_LIMELIGHT_LEFT_METERS = PLACEHOLDER_DOUBLE,
+      TAG_LIMELIGHT_YAW_RAD = PLACEHOLDER_DOUBLE,
+      TAG_LIMELIGHT_PITCH_RAD = PLACEHOLDER_DOUBLE;
 }
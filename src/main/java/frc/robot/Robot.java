@@ -4,12 +4,13 @@
 
 package frc.robot;
 
-import com.revrobotics.CANSparkBase.IdleMode;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
-import frc.robot.subsystems.drive.ModuleConstants;
+import frc.robot.subsystems.arm.ArmCal;
+import frc.robot.subsystems.drive.DriveCal;
+import frc.robot.utils.CalibrationStore;
 
 /**
  * The VM is configured to automatically run this class, and to call the functions corresponding to
@@ -28,6 +29,11 @@ public class Robot extends TimedRobot {
    */
   @Override
   public void robotInit() {
+    // Stored calibrations have to be in place before the subsystems read them
+    CalibrationStore.load();
+    DriveCal.loadStoredCalibrations();
+    ArmCal.loadStoredCalibrations();
+
     // Instantiate our RobotContainer.  This will perform all our button bindings, and put our
     // autonomous chooser on the dashboard.
     m_robotContainer = new RobotContainer();
@@ -59,20 +65,13 @@ public class Robot extends TimedRobot {
 
     CommandScheduler.getInstance().cancelAll();
 
-    m_robotContainer.arm.armMotor.setIdleMode(IdleMode.kCoast);
-    m_robotContainer.drive.frontLeft.turningSparkMax.setIdleMode(IdleMode.kCoast);
-    m_robotContainer.drive.frontRight.turningSparkMax.setIdleMode(IdleMode.kCoast);
-    m_robotContainer.drive.backLeft.turningSparkMax.setIdleMode(IdleMode.kCoast);
-    m_robotContainer.drive.backRight.turningSparkMax.setIdleMode(IdleMode.kCoast);
+    m_robotContainer.idleModeManager.setEnabled(false);
   }
 
   @Override
   public void disabledPeriodic() {
-    m_robotContainer.arm.armMotor.setIdleMode(IdleMode.kCoast);
-    m_robotContainer.drive.frontLeft.turningSparkMax.setIdleMode(IdleMode.kCoast);
-    m_robotContainer.drive.frontRight.turningSparkMax.setIdleMode(IdleMode.kCoast);
-    m_robotContainer.drive.backLeft.turningSparkMax.setIdleMode(IdleMode.kCoast);
-    m_robotContainer.drive.backRight.turningSparkMax.setIdleMode(IdleMode.kCoast);
+    // Only sends anything if an earlier write failed
+    m_robotContainer.idleModeManager.setEnabled(false);
   }
 
   /** This autonomous runs the autonomous command selected by your {@link RobotContainer} class. */
@@ -91,15 +90,7 @@ public class Robot extends TimedRobot {
       m_robotContainer.timedMatch = false;
     }
 
-    m_robotContainer.arm.armMotor.setIdleMode(IdleMode.kBrake);
-    m_robotContainer.drive.frontLeft.turningSparkMax.setIdleMode(
-        ModuleConstants.TURNING_MOTOR_IDLE_MODE);
-    m_robotContainer.drive.frontRight.turningSparkMax.setIdleMode(
-        ModuleConstants.TURNING_MOTOR_IDLE_MODE);
-    m_robotContainer.drive.backLeft.turningSparkMax.setIdleMode(
-        ModuleConstants.TURNING_MOTOR_IDLE_MODE);
-    m_robotContainer.drive.backRight.turningSparkMax.setIdleMode(
-        ModuleConstants.TURNING_MOTOR_IDLE_MODE);
+    m_robotContainer.idleModeManager.setEnabled(true);
   }
 
   /** This function is called periodically during autonomous. */
@@ -125,15 +116,7 @@ public class Robot extends TimedRobot {
       m_robotContainer.timedMatch = false;
     }
 
-    m_robotContainer.arm.armMotor.setIdleMode(IdleMode.kBrake);
-    m_robotContainer.drive.frontLeft.turningSparkMax.setIdleMode(
-        ModuleConstants.TURNING_MOTOR_IDLE_MODE);
-    m_robotContainer.drive.frontRight.turningSparkMax.setIdleMode(
-        ModuleConstants.TURNING_MOTOR_IDLE_MODE);
-    m_robotContainer.drive.backLeft.turningSparkMax.setIdleMode(
-        ModuleConstants.TURNING_MOTOR_IDLE_MODE);
-    m_robotContainer.drive.backRight.turningSparkMax.setIdleMode(
-        ModuleConstants.TURNING_MOTOR_IDLE_MODE);
+    m_robotContainer.idleModeManager.setEnabled(true);
     
     m_robotContainer.arm.initControlLoop();
   }
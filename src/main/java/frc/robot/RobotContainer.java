@@ -4,7 +4,10 @@
 
 package frc.robot;
 
+import com.revrobotics.CANSparkBase.IdleMode;
 import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj.GenericHID.RumbleType;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
@@ -13,24 +16,35 @@ import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.ConditionalCommand;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
+import edu.wpi.first.wpilibj2.command.ProxyCommand;
 import edu.wpi.first.wpilibj2.command.RunCommand;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import edu.wpi.first.wpilibj2.command.WaitCommand;
 import edu.wpi.first.wpilibj2.command.button.CommandXboxController;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
+import frc.robot.commands.AlignToScoringLocation;
 import frc.robot.commands.FinishScore;
 import frc.robot.commands.IntakeSequence;
+import frc.robot.commands.autos.AutoScoreMobilityAndBalance;
+import frc.robot.commands.autos.AutoScoreTwoAndBalance;
 import frc.robot.subsystems.ClawLimelight;
+import frc.robot.subsystems.DeviceHealth;
 import frc.robot.subsystems.Lights;
+import frc.robot.subsystems.PowerManager;
 import frc.robot.subsystems.TagLimelight;
 import frc.robot.subsystems.arm.Arm;
 import frc.robot.subsystems.arm.Arm.ArmPosition;
 import frc.robot.subsystems.drive.DriveCal;
 import frc.robot.subsystems.drive.DriveSubsystem;
+import frc.robot.subsystems.drive.ModuleConstants;
 import frc.robot.subsystems.grabber.Grabber;
+import frc.robot.utils.CommandTimer;
+import frc.robot.utils.IdleModeManager;
 import frc.robot.utils.JoystickUtil;
 import frc.robot.utils.ScoringLocationUtil;
 import frc.robot.utils.ScoringLocationUtil.ScoreHeight;
+import java.util.Optional;
+import java.util.function.DoubleSupplier;
 
 /**
  * This class is where the bulk of the robot should be declared. Since Command-based is a
@@ -60,20 +74,41 @@ public class RobotContainer {
 
   private final ScoringLocationUtil scoreLoc = new ScoringLocationUtil();
   public Arm arm = new Arm(scoreLoc);
-  private ClawLimelight clawLimelight = new ClawLimelight();
-  private Grabber grabber = new Grabber(rumbleBriefly);
+  private Grabber grabber = new Grabber();
   private Lights lights = new Lights();
   private TagLimelight tagLimelight = new TagLimelight();
-  public DriveSubsystem drive = new DriveSubsystem(lights, () -> timedMatch);
+  public DriveSubsystem drive = new DriveSubsystem(lights, tagLimelight, () -> timedMatch);
+  private ClawLimelight clawLimelight = new ClawLimelight(drive.getGyroService());
+  private PowerManager powerManager = new PowerManager(drive);
 
   // A chooser for autonomous commands
   private SendableChooser<Command> autonChooser = new SendableChooser<>();
 
+  /** Coasts the arm and steering while disabled, only sending changes */
+  public final IdleModeManager idleModeManager = new IdleModeManager();
+
+  /** Watches the sparks and reconfigures any that reboot */
+  private final DeviceHealth deviceHealth = new DeviceHealth(idleModeManager);
+
+  /** Prints how long each auto takes */
+  private final CommandTimer autoTimer =
+      new CommandTimer(command -> command == autonChooser.getSelected());
+
   /** The container for the robot. Contains subsystems, OI devices, and commands. */
   public RobotContainer() {
     // Configure the trigger bindings
     configureBindings();
 
+    idleModeManager.register(arm.armMotor, IdleMode.kBrake);
+    idleModeManager.register(
+        drive.frontLeft.turningSparkMax, ModuleConstants.TURNING_MOTOR_IDLE_MODE);
+    idleModeManager.register(
+        drive.frontRight.turningSparkMax, ModuleConstants.TURNING_MOTOR_IDLE_MODE);
+    idleModeManager.register(
+        drive.backLeft.turningSparkMax, ModuleConstants.TURNING_MOTOR_IDLE_MODE);
+    idleModeManager.register(
+        drive.backRight.turningSparkMax, ModuleConstants.TURNING_MOTOR_IDLE_MODE);
+
     Shuffleboard.getTab("Subsystems").add(arm.getName(), arm);
     Shuffleboard.getTab("Subsystems").add(clawLimelight.getName(), clawLimelight);
     Shuffleboard.getTab("Subsystems").add(grabber.getName(), grabber);
@@ -92,6 +127,11 @@ public class RobotContainer {
     arm.initSparks();
     grabber.initSparks();
 
+    arm.registerDeviceHealth(deviceHealth);
+    grabber.registerDeviceHealth(deviceHealth);
+    drive.registerDeviceHealth(deviceHealth, powerManager::invalidateDriveCurrentLimit);
+    deviceHealth.start();
+
     // Put the chooser on the dashboard
     SmartDashboard.putData(autonChooser);
 
@@ -170,14 +210,23 @@ public class RobotContainer {
     //                 })
     //             .ignoringDisable(true));
 
+    // Sensor edges are sampled once per loop by the grabber, so this fires once per acquisition
+    new Trigger(grabber::gamePieceAcquired).onTrue(rumbleBriefly);
+
     driverController.start().onTrue(new InstantCommand(lights::setPartyMode, lights));
 
     driverController.back().onTrue(new InstantCommand(drive::resetYaw, drive));
 
+    DoubleSupplier driveX = () -> MathUtil.applyDeadband(-driverController.getRightY(), 0.1);
+    DoubleSupplier driveY = () -> MathUtil.applyDeadband(-driverController.getRightX(), 0.1);
+    DoubleSupplier driveRot =
+        () -> JoystickUtil.squareAxis(MathUtil.applyDeadband(-driverController.getLeftX(), 0.05));
+
     driverController
         .leftTrigger()
         .whileTrue(
-            IntakeSequence.interruptibleIntakeSequence(arm, grabber, lights)
+            IntakeSequence.interruptibleIntakeSequenceWithDriveAssist(
+                    arm, grabber, lights, drive, clawLimelight, driveX, driveY, driveRot)
                 .beforeStarting(
                     new InstantCommand(
                         () -> {
@@ -190,6 +239,20 @@ public class RobotContainer {
 
     driverController.leftBumper().onTrue(new InstantCommand(arm::cancelScore, arm));
 
+    driverController
+        .b()
+        .whileTrue(
+            new AlignToScoringLocation(drive)
+                .beforeStarting(
+                    () -> {
+                      boolean red =
+                          DriverStation.getAlliance().orElse(Alliance.Blue) == Alliance.Red;
+                      int tagId = scoreLoc.getScoringTagId(red);
+                      drive.targetPose =
+                          Optional.of(
+                              scoreLoc.scoringPoseFromTagPose(tagLimelight.getTagPose(tagId)));
+                    }));
+
     driverController
         .a()
         .onTrue(
@@ -221,10 +284,9 @@ public class RobotContainer {
         new RunCommand(
                 () ->
                     drive.rotateOrKeepHeading(
-                        MathUtil.applyDeadband(-driverController.getRightY(), 0.1),
-                        MathUtil.applyDeadband(-driverController.getRightX(), 0.1),
-                        JoystickUtil.squareAxis(
-                            MathUtil.applyDeadband(-driverController.getLeftX(), 0.05)),
+                        driveX.getAsDouble(),
+                        driveY.getAsDouble(),
+                        driveRot.getAsDouble(),
                         true, // always field relative
                         driverController.getHID().getPOV()),
                 drive)
@@ -232,11 +294,28 @@ public class RobotContainer {
   }
 
   /**
-   * Use this to pass the autonomous command to the main {@link Robot} class.
+   * Use this to pass the autonomous command to the main {@link Robot} class. Autos that end
+   * balanced on the charge station are followed by holding the wheels in an X until auto ends,
+   * rather than handing the drive back to the default command. The selected auto runs through a
+   * proxy, so it can be picked again after a disable and the auto timer still sees it finish.
    *
    * @return the command to run in autonomous
    */
   public Command getAutonomousCommand() {
-    return autonChooser.getSelected();
+    Command selected = autonChooser.getSelected();
+    if (!(selected instanceof AutoScoreTwoAndBalance
+        || selected instanceof AutoScoreMobilityAndBalance)) {
+      return selected;
+    }
+    return new ProxyCommand(selected).andThen(holdXUntilAutoEnds());
+  }
+
+  private Command holdXUntilAutoEnds() {
+    return new RunCommand(drive::setX, drive)
+        .until(
+            () -> {
+              return !DriverStation.isAutonomousEnabled();
+            })
+        .withName("Hold X");
   }
 }
@@ -0,0 +1,160 @@
+package frc.robot.commands;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.subsystems.drive.DriveCal;
+import frc.robot.subsystems.drive.DriveConstants;
+import frc.robot.subsystems.drive.DriveSubsystem;
+
+/**
+ * Drives to the drive subsystem's target pose, a scoring location in field coordinates. Over the
+ * short distance to a scoring location a straight line is the time-optimal path, so the plan is
+ * just a trapezoid profile along the line, starting from the robot's current speed along it. The
+ * path controllers track the profile and the heading.
+ *
+ * <p>The target is fixed on the field, so the plan is made once. Tag observations go into the
+ * drive's pose estimate, and the path controllers correct for them as they arrive. Planning is
+ * closed form; its time is printed at the end for checking.
+ */
+public class AlignToScoringLocation extends Command {
+  private final DriveSubsystem drive;
+  private final TrapezoidProfile profile =
+      new TrapezoidProfile(
+          new TrapezoidProfile.Constraints(
+              DriveCal.ALIGN_MAX_VELOCITY_METERS_PER_SEC,
+              DriveCal.ALIGN_MAX_ACCELERATION_METERS_PER_SEC_SQ));
+  private final Timer timer = new Timer();
+
+  /**
+   * Heading needs continuous input, so this is our own controller rather than the shared one.
+   * Gains are copied from {@link DriveCal#PATH_THETA_CONTROLLER} at the start, so dashboard tuning
+   * still applies.
+   */
+  private final PIDController thetaController = new PIDController(0.0, 0.0, 0.0);
+
+  /** False if there was no target to plan to */
+  private boolean hasPlan = false;
+
+  /** The current plan, a straight line from the start to the target */
+  private Pose2d plannedTarget = new Pose2d();
+
+  private Translation2d planStart = new Translation2d();
+  private Translation2d planDirection = new Translation2d();
+  private TrapezoidProfile.State profileStart = new TrapezoidProfile.State();
+  private TrapezoidProfile.State profileGoal = new TrapezoidProfile.State();
+
+  private double planningMicros = 0.0;
+
+  public AlignToScoringLocation(DriveSubsystem drive) {
+    this.drive = drive;
+    addRequirements(drive);
+  }
+
+  @Override
+  public void initialize() {
+    DriveCal.PATH_X_CONTROLLER.reset();
+    DriveCal.PATH_Y_CONTROLLER.reset();
+    thetaController.setPID(
+        DriveCal.PATH_THETA_CONTROLLER.getP(),
+        DriveCal.PATH_THETA_CONTROLLER.getI(),
+        DriveCal.PATH_THETA_CONTROLLER.getD());
+    thetaController.enableContinuousInput(-Math.PI, Math.PI);
+    thetaController.reset();
+    hasPlan = false;
+    if (drive.targetPose.isEmpty()) {
+      return;
+    }
+
+    // Start from the robot's measured velocity
+    Pose2d pose = drive.getPose();
+    ChassisSpeeds robotSpeeds =
+        DriveConstants.DRIVE_KINEMATICS.toChassisSpeeds(drive.getModuleStates());
+    Translation2d fieldVelocity =
+        new Translation2d(robotSpeeds.vxMetersPerSecond, robotSpeeds.vyMetersPerSecond)
+            .rotateBy(pose.getRotation());
+    plan(pose.getTranslation(), fieldVelocity, drive.targetPose.get());
+  }
+
+  /** Plans a straight line from the given position and velocity to the target */
+  private void plan(Translation2d start, Translation2d startVelocity, Pose2d target) {
+    long startNanos = System.nanoTime();
+
+    Translation2d toTarget = target.getTranslation().minus(start);
+    double distanceMeters = toTarget.getNorm();
+    planDirection =
+        distanceMeters > 1e-6 ? toTarget.div(distanceMeters) : new Translation2d(1.0, 0.0);
+    // Only the speed along the line carries over, the feedback takes out the rest
+    double speedAlongLine =
+        startVelocity.getX() * planDirection.getX() + startVelocity.getY() * planDirection.getY();
+
+    planStart = start;
+    plannedTarget = target;
+    profileStart = new TrapezoidProfile.State(0.0, Math.max(0.0, speedAlongLine));
+    profileGoal = new TrapezoidProfile.State(distanceMeters, 0.0);
+    timer.restart();
+
+    hasPlan = true;
+    planningMicros = (System.nanoTime() - startNanos) / 1000.0;
+  }
+
+  @Override
+  public void execute() {
+    if (!hasPlan) {
+      return;
+    }
+
+    TrapezoidProfile.State setpoint = profile.calculate(timer.get(), profileStart, profileGoal);
+    Translation2d setpointPosition = planStart.plus(planDirection.times(setpoint.position));
+
+    Pose2d pose = drive.getPose();
+    double vxMetersPerSec =
+        planDirection.getX() * setpoint.velocity
+            + DriveCal.PATH_X_CONTROLLER.calculate(pose.getX(), setpointPosition.getX());
+    double vyMetersPerSec =
+        planDirection.getY() * setpoint.velocity
+            + DriveCal.PATH_Y_CONTROLLER.calculate(pose.getY(), setpointPosition.getY());
+    double omegaRadPerSec =
+        MathUtil.clamp(
+            thetaController.calculate(
+                pose.getRotation().getRadians(), plannedTarget.getRotation().getRadians()),
+            -DriveConstants.MAX_ANGULAR_SPEED_RAD_PER_SECONDS,
+            DriveConstants.MAX_ANGULAR_SPEED_RAD_PER_SECONDS);
+
+    ChassisSpeeds chassisSpeeds =
+        ChassisSpeeds.fromFieldRelativeSpeeds(
+            vxMetersPerSec, vyMetersPerSec, omegaRadPerSec, pose.getRotation());
+    drive.setModuleStates(DriveConstants.DRIVE_KINEMATICS.toSwerveModuleStates(chassisSpeeds));
+  }
+
+  @Override
+  public void end(boolean interrupted) {
+    drive.setNoMove();
+    // Hold the heading we aligned to, rather than snapping back to the old one
+    drive.offsetCurrentHeading(0.0);
+    System.out.println(
+        "Align to scoring location "
+            + (interrupted ? "interrupted" : "finished")
+            + ", planning took "
+            + planningMicros
+            + " us");
+  }
+
+  @Override
+  public boolean isFinished() {
+    if (!hasPlan) {
+      return true;
+    }
+    Pose2d pose = drive.getPose();
+    return profile.isFinished(timer.get())
+        && pose.getTranslation().getDistance(plannedTarget.getTranslation())
+            < DriveCal.ALIGN_TRANSLATION_TOLERANCE_METERS
+        && Math.abs(pose.getRotation().minus(plannedTarget.getRotation()).getRadians())
+            < DriveCal.ALIGN_HEADING_TOLERANCE_RAD;
+  }
+}
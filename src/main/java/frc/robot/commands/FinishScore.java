@@ -14,7 +14,9 @@ public class FinishScore extends SequentialCommandGroup {
     addRequirements(arm, grabber, lights);
     addCommands(
         new InstantCommand(() -> grabber.score(arm.getScoreHeight())),
-        new WaitCommand(GrabberCalibrations.SCORING_WAIT_TIME),
+        // Move on as soon as the piece is out, the wait is only a fallback
+        new WaitCommand(GrabberCalibrations.SCORING_WAIT_TIME)
+            .until(() -> !grabber.seeGamePiece()),
         new InstantCommand(() -> grabber.stopMotors()),
         new InstantCommand(() -> arm.goToPosition(ArmPosition.STARTING)),
         new InstantCommand(() -> lights.toggleCode(Lights.LightCode.OFF)));
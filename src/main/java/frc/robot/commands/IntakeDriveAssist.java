@@ -0,0 +1,57 @@
+package frc.robot.commands;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.Calibrations.GamePieceTracking;
+import frc.robot.subsystems.ClawLimelight;
+import frc.robot.subsystems.drive.DriveSubsystem;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Manual driving, except that while the claw limelight sees a game piece the rotation is assisted
+ * to turn the claw towards it. The driver keeps control of translation, and their rotation is added
+ * on top of the assist, so they can always steer past it (the assist is capped well below full
+ * rotation).
+ */
+public class IntakeDriveAssist extends Command {
+  private final DriveSubsystem drive;
+  private final ClawLimelight clawLimelight;
+  private final DoubleSupplier x, y, rot;
+
+  /**
+   * @param x Field relative forward speed, [-1,1]
+   * @param y Field relative sideways speed, [-1,1]
+   * @param rot Driver rotation, [-1,1], added to the assist when a game piece is seen
+   */
+  public IntakeDriveAssist(
+      DriveSubsystem drive,
+      ClawLimelight clawLimelight,
+      DoubleSupplier x,
+      DoubleSupplier y,
+      DoubleSupplier rot) {
+    this.drive = drive;
+    this.clawLimelight = clawLimelight;
+    this.x = x;
+    this.y = y;
+    this.rot = rot;
+    addRequirements(drive);
+  }
+
+  @Override
+  public void execute() {
+    if (!clawLimelight.hasTarget()) {
+      drive.rotateOrKeepHeading(x.getAsDouble(), y.getAsDouble(), rot.getAsDouble(), true, -1);
+      return;
+    }
+
+    // tx is positive to the right, so turn clockwise (negative) towards it
+    double assistRotation =
+        MathUtil.clamp(
+            -GamePieceTracking.ASSIST_ROTATION_PER_DEG * clawLimelight.getFilteredTxDeg(),
+            -GamePieceTracking.ASSIST_MAX_ROTATION,
+            GamePieceTracking.ASSIST_MAX_ROTATION);
+    double rotation = MathUtil.clamp(assistRotation + rot.getAsDouble(), -1.0, 1.0);
+    // Same as the driver turning, so the heading is held wherever the assist leaves it
+    drive.rotateOrKeepHeading(x.getAsDouble(), y.getAsDouble(), rotation, true, -1);
+  }
+}
@@ -4,11 +4,14 @@ import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import edu.wpi.first.wpilibj2.command.WaitUntilCommand;
+import frc.robot.subsystems.ClawLimelight;
 import frc.robot.subsystems.Lights;
 import frc.robot.subsystems.Lights.LightCode;
 import frc.robot.subsystems.arm.Arm;
 import frc.robot.subsystems.arm.Arm.ArmPosition;
+import frc.robot.subsystems.drive.DriveSubsystem;
 import frc.robot.subsystems.grabber.Grabber;
+import java.util.function.DoubleSupplier;
 
 public class IntakeSequence extends SequentialCommandGroup {
   public IntakeSequence(Arm arm, Grabber grabber, Lights lights) {
@@ -31,4 +34,21 @@ public class IntakeSequence extends SequentialCommandGroup {
               lights.toggleCode(LightCode.OFF);
             });
   }
+
+  /**
+   * Intake sequence that also turns the robot towards the game piece seen by the claw limelight,
+   * while the driver drives with the given inputs. See {@link IntakeDriveAssist}.
+   */
+  public static Command interruptibleIntakeSequenceWithDriveAssist(
+      Arm arm,
+      Grabber grabber,
+      Lights lights,
+      DriveSubsystem drive,
+      ClawLimelight clawLimelight,
+      DoubleSupplier x,
+      DoubleSupplier y,
+      DoubleSupplier rot) {
+    return interruptibleIntakeSequence(arm, grabber, lights)
+        .deadlineWith(new IntakeDriveAssist(drive, clawLimelight, x, y, rot));
+  }
 }
@@ -1,58 +1,128 @@
 package frc.robot.commands.autos.components;
 
-import com.ctre.phoenix.sensors.WPI_Pigeon2;
 import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.Command;
-import frc.robot.Calibrations;
+import frc.robot.Calibrations.AutoBalance;
 import frc.robot.subsystems.drive.DriveSubsystem;
 
+/**
+ * Balances on the charge station, starting from on the ramp. Drives uphill in proportion to the
+ * pitch the filtered pitch and pitch rate predict a short lead time ahead. Pitch and pitch rate go
+ * through the same filter, so they describe the same moment. Once the station starts tipping back
+ * towards level, the prediction reaches level first, so we stop that long early and back off
+ * rather than ride it past level. Finishes with the wheels in an X once the station has stayed
+ * level for the settle time.
+ */
 public class AutoChargeStationBalance extends Command {
   private final DriveSubsystem drive;
-  private final WPI_Pigeon2 gyro;
   private final double NOT_MOVING_IN_Y = 0;
   private final double NOT_ROTATING = 0;
   private final boolean ROBOT_RELATIVE = false;
 
+  private double startTimestampSec = 0.0;
+  private double balancedTimestampSec = Double.NaN;
+
   public AutoChargeStationBalance(DriveSubsystem drive) {
     this.drive = drive;
-    this.gyro = drive.getGyro();
+    addRequirements(drive);
   }
+
   // Called when the command is initially scheduled.
   @Override
-  public void initialize() {}
+  public void initialize() {
+    startTimestampSec = Timer.getFPGATimestamp();
+    balancedTimestampSec = Double.NaN;
+  }
 
   // Called every time the scheduler runs while the command is scheduled.
   @Override
   public void execute() {
-    double pitchDeg = gyro.getPitch();
+    double pitchDeg = drive.getFilteredPitch();
+    double pitchRateDegPerSec = drive.getFilteredPitchRateDegPerSec();
 
-    /** Velocity is [-1,1] */
-    double normVelocity =
-        pitchDeg * Calibrations.AutoBalance.CHARGE_STATION_PITCH_DEGREES_TO_NORM_VELOCITY;
-
-    double deadbandedNormVelocity =
-        MathUtil.applyDeadband(
-            normVelocity, Calibrations.AutoBalance.CHARGE_STATION_DEADBAND_NORM_VELOCITY);
+    if (isBalanced(pitchDeg, pitchRateDegPerSec)) {
+      if (Double.isNaN(balancedTimestampSec)) {
+        balancedTimestampSec = Timer.getFPGATimestamp();
+      }
+    } else {
+      balancedTimestampSec = Double.NaN;
+    }
 
     /** Time remaining in current match period (auto or teleop) in seconds */
     double matchTime = DriverStation.getMatchTime();
 
-    // stop driving (and thus set x) if there is less than one second left in auton
-    if (matchTime > Calibrations.AutoBalance.SET_X_TIME_LEFT_SECONDS) {
-      drive.drive(deadbandedNormVelocity, NOT_MOVING_IN_Y, NOT_ROTATING, ROBOT_RELATIVE);
-    } else {
+    if (shouldStop(pitchDeg, pitchRateDegPerSec, matchTime)) {
       drive.setX();
+      return;
     }
+
+    drive.drive(
+        getNormVelocity(pitchDeg, pitchRateDegPerSec),
+        NOT_MOVING_IN_Y,
+        NOT_ROTATING,
+        ROBOT_RELATIVE);
+  }
+
+  /** Level and still enough to count towards the settle time */
+  static boolean isBalanced(double pitchDeg, double pitchRateDegPerSec) {
+    return Math.abs(pitchDeg) < AutoBalance.LEVEL_TOLERANCE_DEG
+        && Math.abs(pitchRateDegPerSec) < AutoBalance.BALANCED_RATE_DEG_PER_SEC;
+  }
+
+  /**
+   * Stop driving (and thus set x) if there is less than one second left in auton, or if the
+   * station is balanced
+   */
+  static boolean shouldStop(double pitchDeg, double pitchRateDegPerSec, double matchTime) {
+    return matchTime <= AutoBalance.SET_X_TIME_LEFT_SECONDS
+        || isBalanced(pitchDeg, pitchRateDegPerSec);
+  }
+
+  /** Uphill drive command towards the predicted pitch, [-1,1] */
+  static double getNormVelocity(double pitchDeg, double pitchRateDegPerSec) {
+    double normVelocity =
+        MathUtil.clamp(
+            getPredictedPitchDeg(pitchDeg, pitchRateDegPerSec)
+                * AutoBalance.CHARGE_STATION_PITCH_DEGREES_TO_NORM_VELOCITY,
+            -AutoBalance.CHARGE_STATION_MAX_NORM_VELOCITY,
+            AutoBalance.CHARGE_STATION_MAX_NORM_VELOCITY);
+    return MathUtil.applyDeadband(normVelocity, AutoBalance.CHARGE_STATION_DEADBAND_NORM_VELOCITY);
+  }
+
+  /**
+   * Pitch the station will have after the stop lead time if it keeps tipping at the current rate.
+   * It crosses level once the station is predicted to be level within the lead time, so the robot
+   * stops that early, then backs off the far side before the station tips past level.
+   */
+  static double getPredictedPitchDeg(double pitchDeg, double pitchRateDegPerSec) {
+    return pitchDeg + pitchRateDegPerSec * AutoBalance.STOP_LEAD_TIME_SEC;
+  }
+
+  /** Whether the station has been balanced since balancedTimestampSec (NaN if not) long enough */
+  static boolean hasSettled(double balancedTimestampSec, double nowSec) {
+    return !Double.isNaN(balancedTimestampSec)
+        && nowSec - balancedTimestampSec > AutoBalance.BALANCED_SETTLE_SEC;
   }
 
   // Called once the command ends or is interrupted.
   @Override
-  public void end(boolean interrupted) {}
+  public void end(boolean interrupted) {
+    drive.setX();
+    if (!interrupted) {
+      System.out.println(
+          "Charge station balanced in "
+              + (balancedTimestampSec - startTimestampSec)
+              + " s (settled after "
+              + (Timer.getFPGATimestamp() - startTimestampSec)
+              + " s)");
+    }
+  }
 
   // Returns true when the command should end.
   @Override
   public boolean isFinished() {
-    return false;
+    return hasSettled(balancedTimestampSec, Timer.getFPGATimestamp());
   }
 }
@@ -6,18 +6,30 @@ package frc.robot.commands.autos.components;
 
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
-import edu.wpi.first.wpilibj2.command.RunCommand;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
-import edu.wpi.first.wpilibj2.command.WaitCommand;
+import edu.wpi.first.wpilibj2.command.WaitUntilCommand;
 import frc.robot.Calibrations;
+import frc.robot.subsystems.drive.DriveConstants;
 import frc.robot.subsystems.drive.DriveSubsystem;
 
 /** Drives over the charge station, then back and balances */
 public class AutoMobilityChargeStationSequence extends SequentialCommandGroup {
 
   private double startXMeters = 0.0;
-  private static final double NORM_SPEED_UP_CHARGE_STATION = 0.6;
-  private static final double NORM_SPEED_BACK_CHARGE_STATION = -0.4;
+  private static final double MAX_SPEED_UP_CHARGE_STATION_METERS_PER_SEC =
+      0.6 * DriveConstants.MAX_SPEED_METERS_PER_SECOND;
+  private static final double MAX_SPEED_BACK_CHARGE_STATION_METERS_PER_SEC =
+      0.4 * DriveConstants.MAX_SPEED_METERS_PER_SECOND;
+  private static final double MAX_ACCELERATION_CHARGE_STATION_METERS_PER_SEC_SQ = 2.0;
+
+  /** Give up waiting for the robot to settle after this long */
+  private static final double MAX_SETTLE_WAIT_SEC = 1.0;
+
+  /**
+   * Give up on each drive after this long, about 1.5x the profile time, so a robot hung up on the
+   * station (or odometry that never reaches the goal) doesn't eat the rest of auto
+   */
+  private static final double MAX_DRIVE_UP_SEC = 4.5, MAX_DRIVE_BACK_SEC = 3.0;
 
   public AutoMobilityChargeStationSequence(
       DriveSubsystem drive, double distanceMeters, double distanceBackMeters) {
@@ -26,32 +38,41 @@ public class AutoMobilityChargeStationSequence extends SequentialCommandGroup {
             () -> {
               startXMeters = drive.getPose().getX();
             }),
-        new RunCommand(
-                () -> {
-                  drive.drive(NORM_SPEED_UP_CHARGE_STATION, 0, 0, true);
-                },
-                drive)
-            .until(
-                () -> {
-                  return (drive.getPose().getX() - startXMeters) > distanceMeters;
-                }),
-        drive.stopDrivingCommand(),
-        new WaitCommand(1.0),
-        new RunCommand(
-                () -> {
-                  /** Time remaining in current match period (auto or teleop) in seconds */
-                  double matchTime = DriverStation.getMatchTime();
-                  if (matchTime > Calibrations.AutoBalance.SET_X_TIME_LEFT_SECONDS) {
-                    drive.drive(NORM_SPEED_BACK_CHARGE_STATION, 0, 0, true);
-                  } else {
-                    drive.setX();
-                  }
-                },
-                drive)
-            .until(
-                () -> {
-                  return (drive.getPose().getX() - startXMeters) < distanceBackMeters;
-                }),
+        new SequentialCommandGroup(
+                new DriveDistanceProfiled(
+                        drive,
+                        () -> {
+                          return startXMeters + distanceMeters;
+                        },
+                        MAX_SPEED_UP_CHARGE_STATION_METERS_PER_SEC,
+                        MAX_ACCELERATION_CHARGE_STATION_METERS_PER_SEC_SQ)
+                    .withTimeout(MAX_DRIVE_UP_SEC),
+                // Go back as soon as the robot is flat on the carpet and done rocking
+                new WaitUntilCommand(
+                        () -> {
+                          return Math.abs(drive.getFilteredPitch())
+                                  < Calibrations.AutoBalance.LEVEL_TOLERANCE_DEG
+                              && Math.abs(drive.getFilteredPitchRateDegPerSec())
+                                  < Calibrations.AutoBalance.BALANCED_RATE_DEG_PER_SEC;
+                        })
+                    .withTimeout(MAX_SETTLE_WAIT_SEC),
+                new DriveDistanceProfiled(
+                        drive,
+                        () -> {
+                          return startXMeters + distanceBackMeters;
+                        },
+                        MAX_SPEED_BACK_CHARGE_STATION_METERS_PER_SEC,
+                        MAX_ACCELERATION_CHARGE_STATION_METERS_PER_SEC_SQ)
+                    .withTimeout(MAX_DRIVE_BACK_SEC))
+            // Out of time, skip to balancing, which sets X this close to the end of auto
+            .until(AutoMobilityChargeStationSequence::isAutoEnding),
         new AutoChargeStationBalance(drive));
   }
+
+  /** Whether auto is nearly over and the robot should stop where it is */
+  private static boolean isAutoEnding() {
+    double matchTime = DriverStation.getMatchTime();
+    // Negative when there's no match timer
+    return matchTime >= 0.0 && matchTime <= Calibrations.AutoBalance.SET_X_TIME_LEFT_SECONDS;
+  }
 }
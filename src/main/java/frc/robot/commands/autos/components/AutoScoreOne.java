@@ -11,16 +11,28 @@ import frc.robot.subsystems.arm.ArmCal;
 import frc.robot.subsystems.grabber.Grabber;
 import frc.robot.subsystems.grabber.GrabberCalibrations;
 
+/**
+ * Scores the held game piece. Steps are started off the arm's predicted arrival time rather than
+ * waiting for it to get there: ejection starts just before the arm reaches the scoring position,
+ * and the command ends while the arm is still finishing its move back to the starting position, so
+ * whatever comes next (e.g. driving) overlaps with it.
+ */
 public class AutoScoreOne extends SequentialCommandGroup {
   public AutoScoreOne(boolean fast, Arm arm, Grabber grabber, Lights lights) {
     addCommands(
         new InstantCommand(() -> arm.startScore()),
-        new WaitUntilCommand(() -> arm.atDesiredArmPosition())
+        new WaitUntilCommand(() -> arm.willReachDesiredPositionWithin(ArmCal.SCORE_EJECT_LEAD_SEC))
             .withTimeout(ArmCal.START_TO_PRESCORE_SEC),
         new InstantCommand(() -> grabber.score(arm.getScoreHeight())),
-        new WaitCommand(GrabberCalibrations.EJECTION_WAIT_TIME),
+        new WaitCommand(GrabberCalibrations.EJECTION_WAIT_TIME)
+            .until(() -> !grabber.seeGamePiece()),
         new InstantCommand(() -> arm.goToPosition(ArmPosition.STARTING)),
-        new WaitUntilCommand(() -> arm.atPosition(ArmPosition.STARTING))
+        new WaitUntilCommand(
+                () ->
+                    arm.willReachDesiredPositionWithin(
+                        fast
+                            ? ArmCal.SCORE_TO_START_OVERLAP_FAST_SEC
+                            : ArmCal.SCORE_TO_START_OVERLAP_SEC))
             .withTimeout(fast ? ArmCal.SCORE_TO_START_FAST_SEC : ArmCal.SCORE_TO_START_SEC));
   }
 }
@@ -0,0 +1,75 @@
+package frc.robot.commands.autos.components;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.subsystems.drive.DriveCal;
+import frc.robot.subsystems.drive.DriveConstants;
+import frc.robot.subsystems.drive.DriveSubsystem;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Drives straight along the field X axis from rest to a goal X on a trapezoid profile. The profile
+ * velocity is fed forward and odometry X is corrected with a P controller, so the robot stops on
+ * the distance instead of coasting past a threshold. Finishes once the profile is done and the
+ * robot is within tolerance.
+ */
+public class DriveDistanceProfiled extends Command {
+  private final DriveSubsystem drive;
+  private final DoubleSupplier goalXMeters;
+  private final TrapezoidProfile profile;
+  private final Timer timer = new Timer();
+
+  private TrapezoidProfile.State startState = new TrapezoidProfile.State();
+  private TrapezoidProfile.State goalState = new TrapezoidProfile.State();
+
+  /**
+   * @param goalXMeters Field X to stop at, read when the command starts
+   */
+  public DriveDistanceProfiled(
+      DriveSubsystem drive,
+      DoubleSupplier goalXMeters,
+      double maxVelocityMetersPerSec,
+      double maxAccelerationMetersPerSecSq) {
+    this.drive = drive;
+    this.goalXMeters = goalXMeters;
+    profile =
+        new TrapezoidProfile(
+            new TrapezoidProfile.Constraints(
+                maxVelocityMetersPerSec, maxAccelerationMetersPerSecSq));
+    addRequirements(drive);
+  }
+
+  @Override
+  public void initialize() {
+    startState = new TrapezoidProfile.State(drive.getPose().getX(), 0.0);
+    goalState = new TrapezoidProfile.State(goalXMeters.getAsDouble(), 0.0);
+    timer.restart();
+  }
+
+  @Override
+  public void execute() {
+    TrapezoidProfile.State setpoint = profile.calculate(timer.get(), startState, goalState);
+    double positionErrorMeters = setpoint.position - drive.getPose().getX();
+    double vxMetersPerSec = setpoint.velocity + DriveCal.AUTO_DISTANCE_P * positionErrorMeters;
+
+    ChassisSpeeds chassisSpeeds =
+        ChassisSpeeds.fromFieldRelativeSpeeds(
+            vxMetersPerSec, 0.0, 0.0, Rotation2d.fromDegrees(drive.getHeadingDegrees()));
+    drive.setModuleStates(DriveConstants.DRIVE_KINEMATICS.toSwerveModuleStates(chassisSpeeds));
+  }
+
+  @Override
+  public void end(boolean interrupted) {
+    drive.stopDriving();
+  }
+
+  @Override
+  public boolean isFinished() {
+    return profile.isFinished(timer.get())
+        && Math.abs(goalState.position - drive.getPose().getX())
+            < DriveCal.AUTO_DISTANCE_TOLERANCE_METERS;
+  }
+}
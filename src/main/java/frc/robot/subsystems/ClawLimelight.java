@@ -1,5 +1,188 @@
 package frc.robot.subsystems;
 
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.networktables.DoubleSubscriber;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.TimestampedDouble;
+import edu.wpi.first.util.sendable.SendableBuilder;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.Calibrations.GamePieceTracking;
+import frc.robot.Constants;
+import frc.robot.subsystems.drive.GyroService;
 
-public class ClawLimelight extends SubsystemBase {}
+/**
+ * Tracks the game piece seen by the limelight on the claw. The piece's direction is filtered in the
+ * field frame, as a bearing (gyro yaw at capture minus tx), by a small Kalman filter with an angle
+ * and angle rate state, so a dropped or jumpy frame doesn't jerk anything steering off it. In the
+ * field frame the robot turning doesn't look like the piece moving, so the filter only has to
+ * follow the piece's real (slow) motion, and tx is worked out from the current yaw with no lag.
+ * Each frame is compared against where the filter thinks the piece was when the frame was
+ * captured, which takes the camera latency out.
+ */
+public class ClawLimelight extends SubsystemBase {
+  private final DoubleSubscriber txSub;
+  private final DoubleSubscriber tySub;
+  private final DoubleSubscriber taSub;
+  private final DoubleSubscriber tvSub;
+  private final DoubleSubscriber pipelineLatencySub;
+  private final DoubleSubscriber captureLatencySub;
+  private final GyroService gyroService;
+
+  private long lastFrameTimestamp = 0;
+  private double lastSeenTimestampSec = Double.NEGATIVE_INFINITY;
+  private double lastFilterTimestampSec = Timer.getFPGATimestamp();
+
+  /** Filter state, field bearing to the piece (deg, counterclockwise) and its rate (deg/s) */
+  private double bearingDeg = 0.0;
+
+  private double bearingRateDegPerSec = 0.0;
+
+  /** Filter covariance, symmetric so only three terms */
+  private double pAngle = 1e3, pAngleRate = 0.0, pRate = 1e3;
+
+  private double latestTyDeg = 0.0;
+  private double latestAreaPercent = 0.0;
+  private double latestLatencySec = 0.0;
+
+  public ClawLimelight(GyroService gyroService) {
+    this.gyroService = gyroService;
+    NetworkTable table =
+        NetworkTableInstance.getDefault().getTable(Constants.CLAW_LIMELIGHT_TABLE_NAME);
+    txSub = table.getDoubleTopic("tx").subscribe(0.0);
+    tySub = table.getDoubleTopic("ty").subscribe(0.0);
+    taSub = table.getDoubleTopic("ta").subscribe(0.0);
+    tvSub = table.getDoubleTopic("tv").subscribe(0.0);
+    pipelineLatencySub = table.getDoubleTopic("tl").subscribe(0.0);
+    captureLatencySub = table.getDoubleTopic("cl").subscribe(0.0);
+  }
+
+  @Override
+  public void periodic() {
+    double nowSec = Timer.getFPGATimestamp();
+    predict(nowSec - lastFilterTimestampSec);
+    lastFilterTimestampSec = nowSec;
+
+    TimestampedDouble tx = txSub.getAtomic();
+    if (tx.timestamp == lastFrameTimestamp) {
+      return;
+    }
+    lastFrameTimestamp = tx.timestamp;
+
+    latestAreaPercent = taSub.get();
+    if (tvSub.get() < 1.0 || latestAreaPercent < GamePieceTracking.MIN_TARGET_AREA_PERCENT) {
+      return;
+    }
+
+    latestTyDeg = tySub.get();
+    latestLatencySec = (pipelineLatencySub.get() + captureLatencySub.get()) / 1000.0;
+    // tx is positive to the right, yaw is counterclockwise
+    double measuredBearingDeg = gyroService.getYawDegAt(nowSec - latestLatencySec) - tx.value;
+    if (!hasTarget()) {
+      // Start over rather than slewing from wherever the last piece was
+      bearingDeg = measuredBearingDeg;
+      bearingRateDegPerSec = 0.0;
+      pAngle = GamePieceTracking.TX_MEASUREMENT_VARIANCE_DEG_SQ;
+      pAngleRate = 0.0;
+      pRate = 1e3;
+    } else {
+      correct(measuredBearingDeg, latestLatencySec);
+    }
+    lastSeenTimestampSec = nowSec;
+  }
+
+  /** Kalman predict step for a constant angle rate model */
+  private void predict(double dtSec) {
+    bearingDeg += bearingRateDegPerSec * dtSec;
+
+    // P = F P F' + Q, with F = [1 dt; 0 1] and Q from white noise acceleration
+    double q = GamePieceTracking.TX_ACCELERATION_VARIANCE_DEG_SQ_PER_SEC_4;
+    double dt2 = dtSec * dtSec;
+    pAngle += 2.0 * dtSec * pAngleRate + dt2 * pRate + q * dt2 * dt2 / 4.0;
+    pAngleRate += dtSec * pRate + q * dt2 * dtSec / 2.0;
+    pRate += q * dt2;
+  }
+
+  /**
+   * Kalman correct step with a measurement taken the given time ago. The filter's estimate of the
+   * angle at that time is angle - rate * latency, so H = [1, -latency].
+   */
+  private void correct(double measuredBearingDeg, double latencySec) {
+    double h1 = -latencySec;
+    double innovation = measuredBearingDeg - (bearingDeg + h1 * bearingRateDegPerSec);
+
+    // P H'
+    double pht0 = pAngle + h1 * pAngleRate;
+    double pht1 = pAngleRate + h1 * pRate;
+    double innovationVariance =
+        pht0 + h1 * pht1 + GamePieceTracking.TX_MEASUREMENT_VARIANCE_DEG_SQ;
+    double k0 = pht0 / innovationVariance;
+    double k1 = pht1 / innovationVariance;
+
+    bearingDeg += k0 * innovation;
+    bearingRateDegPerSec += k1 * innovation;
+
+    // P = (I - K H) P
+    double newPAngle = pAngle - k0 * pht0;
+    double newPAngleRate = pAngleRate - k0 * pht1;
+    double newPRate = pRate - k1 * pht1;
+    pAngle = newPAngle;
+    pAngleRate = newPAngleRate;
+    pRate = newPRate;
+  }
+
+  /** True if a game piece was seen recently enough that the filtered angle can be trusted */
+  public boolean hasTarget() {
+    return Timer.getFPGATimestamp() - lastSeenTimestampSec
+        < GamePieceTracking.TARGET_TIMEOUT_SEC;
+  }
+
+  /**
+   * Horizontal angle to the game piece from the filtered bearing and the current yaw, positive is
+   * to the right of the camera
+   */
+  public double getFilteredTxDeg() {
+    return MathUtil.inputModulus(gyroService.getYawDeg() - bearingDeg, -180.0, 180.0);
+  }
+
+  /** Rate tx is changing, from both the robot turning and the piece moving */
+  public double getTxRateDegPerSec() {
+    return gyroService.getYawRateDegPerSec() - bearingRateDegPerSec;
+  }
+
+  /** Filtered field bearing to the game piece, counterclockwise, same frame as the gyro yaw */
+  public double getFilteredBearingDeg() {
+    return bearingDeg;
+  }
+
+  public double getTyDeg() {
+    return latestTyDeg;
+  }
+
+  public double getAreaPercent() {
+    return latestAreaPercent;
+  }
+
+  @Override
+  public void initSendable(SendableBuilder builder) {
+    super.initSendable(builder);
+    builder.addBooleanProperty("Has target", this::hasTarget, null);
+    builder.addDoubleProperty("Filtered tx (deg)", this::getFilteredTxDeg, null);
+    builder.addDoubleProperty("tx rate (deg per s)", this::getTxRateDegPerSec, null);
+    builder.addDoubleProperty("Filtered bearing (deg)", this::getFilteredBearingDeg, null);
+    builder.addDoubleProperty(
+        "Raw tx (deg)",
+        () -> {
+          return txSub.get();
+        },
+        null);
+    builder.addDoubleProperty("Area (%)", this::getAreaPercent, null);
+    builder.addDoubleProperty(
+        "Latency (s)",
+        () -> {
+          return latestLatencySec;
+        },
+        null);
+  }
+}
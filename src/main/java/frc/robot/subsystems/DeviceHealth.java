@@ -0,0 +1,232 @@
+package frc.robot.subsystems;
+
+import com.revrobotics.CANSparkBase.FaultID;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.REVLibError;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.utils.DeviceConfigExecutor;
+import frc.robot.utils.IdleModeManager;
+import frc.robot.utils.TelemetryPublisher;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Watches the SPARK MAXes for trouble. One device is checked per loop, from values the spark
+ * already sends periodically, so checking costs no CAN traffic. It counts CAN timeouts and
+ * brownouts, remembers each device's last error (best-effort, other threads share it) and sticky
+ * faults, and notices when a spark has rebooted (its sticky "has reset" fault is set; {@link
+ * #start()} clears sticky faults at boot). A rebooted spark has lost its configuration, so its init
+ * function is run again on the device config thread.
+ *
+ * <p>Health goes out as a bitmap with one bit per device, in registration order (printed at
+ * start), rather than a string per device.
+ */
+public class DeviceHealth extends SubsystemBase {
+  private static class Device {
+    final String name;
+    final CANSparkMax spark;
+    final BooleanSupplier reinit;
+    final AtomicBoolean reinitInFlight = new AtomicBoolean(false);
+    volatile boolean reinitFailed = false;
+    boolean faulted = false;
+    boolean timedOut = false;
+
+    /** Most recent error other than kOk, for telemetry */
+    REVLibError lastError = REVLibError.kOk;
+
+    /** Sticky fault bits as of the last check, one bit per FaultID */
+    int stickyFaults = 0;
+
+    int numResets = 0;
+
+    /** Times the device started timing out, not loops spent timed out */
+    int numTimeouts = 0;
+
+    Device(String name, CANSparkMax spark, BooleanSupplier reinit) {
+      this.name = name;
+      this.spark = spark;
+      this.reinit = reinit;
+    }
+
+    boolean isHealthy() {
+      return !faulted
+          && !reinitFailed
+          && !reinitInFlight.get()
+          && !timedOut;
+    }
+  }
+
+  /** Bits in a double stay exact up to here */
+  private static final int MAX_DEVICES = 52;
+
+  private final ArrayList<Device> devices = new ArrayList<>();
+  private final IdleModeManager idleModeManager;
+
+  private boolean started = false;
+  private int nextDeviceIndex = 0;
+  private boolean wasBrownedOut = false;
+  private int numBrownouts = 0;
+
+  private final TelemetryPublisher telemetry = new TelemetryPublisher("Device Health");
+
+  public DeviceHealth(IdleModeManager idleModeManager) {
+    this.idleModeManager = idleModeManager;
+  }
+
+  private void initTelemetry() {
+    telemetry.addDouble(
+        "Unhealthy bitmap", this::getUnhealthyBitmap, TelemetryPublisher.MEDIUM_HZ);
+    telemetry.addDouble("Num brownouts", () -> numBrownouts, TelemetryPublisher.SLOW_HZ);
+    telemetry.addDoubleArray(
+        "Resets",
+        devices.size(),
+        values -> {
+          for (int i = 0; i < devices.size(); i++) {
+            values[i] = devices.get(i).numResets;
+          }
+        },
+        TelemetryPublisher.SLOW_HZ);
+    telemetry.addDoubleArray(
+        "CAN timeouts",
+        devices.size(),
+        values -> {
+          for (int i = 0; i < devices.size(); i++) {
+            values[i] = devices.get(i).numTimeouts;
+          }
+        },
+        TelemetryPublisher.SLOW_HZ);
+    telemetry.addDoubleArray(
+        "Sticky faults",
+        devices.size(),
+        values -> {
+          for (int i = 0; i < devices.size(); i++) {
+            values[i] = devices.get(i).stickyFaults;
+          }
+        },
+        TelemetryPublisher.SLOW_HZ);
+    telemetry.addDoubleArray(
+        "Last error codes",
+        devices.size(),
+        values -> {
+          for (int i = 0; i < devices.size(); i++) {
+            values[i] = devices.get(i).lastError.ordinal();
+          }
+        },
+        TelemetryPublisher.SLOW_HZ);
+  }
+
+  /**
+   * @param name For the start printout
+   * @param spark Device to watch
+   * @param reinit Puts the device's whole configuration back, true on success. Runs on the device
+   *     config thread.
+   */
+  public void register(String name, CANSparkMax spark, BooleanSupplier reinit) {
+    if (devices.size() >= MAX_DEVICES) {
+      System.out.println("Too many devices for health monitoring, not watching " + name);
+      return;
+    }
+    devices.add(new Device(name, spark, reinit));
+  }
+
+  /** Call once every device is registered and configured, clears the boot-time reset faults */
+  public void start() {
+    for (int i = 0; i < devices.size(); i++) {
+      Device device = devices.get(i);
+      device.spark.clearFaults();
+      System.out.println("Device health bit " + i + ": " + device.name);
+    }
+    initTelemetry();
+    started = true;
+  }
+
+  @Override
+  public void periodic() {
+    boolean brownedOut = RobotController.isBrownedOut();
+    if (brownedOut && !wasBrownedOut) {
+      numBrownouts++;
+      System.out.println("Brownout detected");
+    }
+    wasBrownedOut = brownedOut;
+
+    if (!started) {
+      return;
+    }
+    if (!devices.isEmpty()) {
+      checkDevice(devices.get(nextDeviceIndex));
+      nextDeviceIndex = (nextDeviceIndex + 1) % devices.size();
+    }
+
+    telemetry.update();
+  }
+
+  private void checkDevice(Device device) {
+    if (device.reinitInFlight.get()) {
+      return;
+    }
+
+    // The last error belongs to whichever call last touched the spark, on any thread, so make a
+    // call of our own first: bus voltage comes from a periodic status frame and reports a timeout
+    // if that frame stops arriving. Best-effort, since another thread can still get in between.
+    device.spark.getBusVoltage();
+    REVLibError error = device.spark.getLastError();
+    if (error != REVLibError.kOk) {
+      device.lastError = error;
+    }
+    boolean timedOut = error == REVLibError.kCANTimeout || error == REVLibError.kTimeout;
+    if (timedOut && !device.timedOut) {
+      device.numTimeouts++;
+    }
+    device.timedOut = timedOut;
+    device.faulted = device.spark.getFaults() != 0;
+
+    int stickyFaults = device.spark.getStickyFaults() & 0xffff;
+    int newStickyFaults = stickyFaults & ~device.stickyFaults;
+    device.stickyFaults = stickyFaults;
+    if (newStickyFaults != 0) {
+      System.out.println(
+          device.name + " new sticky faults 0x" + Integer.toHexString(newStickyFaults));
+    }
+
+    if ((stickyFaults & (1 << FaultID.kHasReset.value)) != 0) {
+      device.numResets++;
+      System.out.println(device.name + " has reset, reconfiguring");
+      reinitialize(device);
+    }
+  }
+
+  private void reinitialize(Device device) {
+    device.reinitInFlight.set(true);
+    DeviceConfigExecutor.submit(
+        () -> {
+          try {
+            boolean success = device.reinit.getAsBoolean();
+            device.reinitFailed = !success;
+            if (success) {
+              // Clears has-reset too, so a failed reinit gets tried again
+              device.spark.clearFaults();
+              System.out.println(device.name + " reconfigured");
+            } else {
+              System.out.println(device.name + " reconfigure failed, will retry");
+            }
+          } finally {
+            device.reinitInFlight.set(false);
+          }
+        });
+    // Whatever idle mode it had is gone
+    idleModeManager.invalidate(device.spark);
+  }
+
+  /** Bit i is set if the ith registered device has a problem */
+  public double getUnhealthyBitmap() {
+    long bitmap = 0;
+    for (int i = 0; i < devices.size(); i++) {
+      if (!devices.get(i).isHealthy()) {
+        bitmap |= 1L << i;
+      }
+    }
+    return bitmap;
+  }
+}
@@ -0,0 +1,145 @@
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.PowerDistribution;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.Calibrations.PowerManagement;
+import frc.robot.subsystems.drive.DriveSubsystem;
+import frc.robot.subsystems.drive.ModuleConstants;
+import frc.robot.utils.DeviceConfigExecutor;
+import frc.robot.utils.TelemetryPublisher;
+
+/**
+ * Keeps the battery out of brownout by budgeting current. Every loop it samples battery voltage and
+ * total current, estimates the battery's internal resistance, and works out how much current the
+ * robot can draw before the voltage would sag below {@link PowerManagement#MIN_BATTERY_VOLTS}. The
+ * arm and steering get their share first; whatever is left goes to the drive motors through their
+ * smart current limits. The limit caps torque, so a sagging battery costs acceleration rather than
+ * top speed. Limit changes are sent on the device config thread.
+ */
+public class PowerManager extends SubsystemBase {
+  private final PowerDistribution pdh = new PowerDistribution();
+  private final DriveSubsystem drive;
+
+  private double batteryResistanceOhms = PowerManagement.NOMINAL_BATTERY_RESISTANCE_OHMS;
+
+  private double batteryVolts = 12.0;
+  private double totalCurrentAmps = 0.0;
+  private double openCircuitVolts = 12.0;
+  private double driveBudgetAmps =
+      ModuleConstants.DRIVING_MOTOR_CURRENT_LIMIT_AMPS * PowerManagement.NUM_DRIVE_MOTORS;
+  private int driveCurrentLimitAmps = ModuleConstants.DRIVING_MOTOR_CURRENT_LIMIT_AMPS;
+
+  /** Set when a limit write fails, so the limit is sent again next loop */
+  private volatile boolean resendDriveCurrentLimit = false;
+
+  private final TelemetryPublisher telemetry = new TelemetryPublisher("Power");
+
+  public PowerManager(DriveSubsystem drive) {
+    this.drive = drive;
+
+    telemetry.addDouble("Battery (V)", () -> batteryVolts, TelemetryPublisher.FAST_HZ);
+    telemetry.addDouble("Total current (A)", () -> totalCurrentAmps, TelemetryPublisher.FAST_HZ);
+    telemetry.addDouble(
+        "Battery resistance (ohm)", () -> batteryResistanceOhms, TelemetryPublisher.MEDIUM_HZ);
+    telemetry.addDouble(
+        "Drive current budget (A)", () -> driveBudgetAmps, TelemetryPublisher.MEDIUM_HZ);
+    telemetry.addDouble(
+        "Drive current limit (A)", () -> driveCurrentLimitAmps, TelemetryPublisher.MEDIUM_HZ);
+    telemetry.addDouble(
+        "Predicted unlimited sag (V)",
+        this::getPredictedUnlimitedVolts,
+        TelemetryPublisher.MEDIUM_HZ);
+    telemetry.addDouble(
+        "Accel headroom (%)", this::getAccelHeadroomPercent, TelemetryPublisher.MEDIUM_HZ);
+  }
+
+  @Override
+  public void periodic() {
+    double lastVolts = batteryVolts;
+    double lastAmps = totalCurrentAmps;
+    batteryVolts = RobotController.getBatteryVoltage();
+    totalCurrentAmps = pdh.getTotalCurrent();
+
+    // Resistance can only be seen when the current actually changes
+    double deltaAmps = totalCurrentAmps - lastAmps;
+    if (Math.abs(deltaAmps) > PowerManagement.MIN_CURRENT_STEP_FOR_RESISTANCE_AMPS) {
+      double resistanceSample =
+          MathUtil.clamp(
+              -(batteryVolts - lastVolts) / deltaAmps,
+              PowerManagement.MIN_BATTERY_RESISTANCE_OHMS,
+              PowerManagement.MAX_BATTERY_RESISTANCE_OHMS);
+      batteryResistanceOhms +=
+          PowerManagement.RESISTANCE_FILTER_GAIN * (resistanceSample - batteryResistanceOhms);
+    }
+    openCircuitVolts = batteryVolts + totalCurrentAmps * batteryResistanceOhms;
+
+    double allowedTotalAmps =
+        (openCircuitVolts - PowerManagement.MIN_BATTERY_VOLTS) / batteryResistanceOhms;
+    driveBudgetAmps = Math.max(0.0, allowedTotalAmps - PowerManagement.RESERVED_CURRENT_AMPS);
+
+    int desiredLimitAmps =
+        (int)
+            MathUtil.clamp(
+                driveBudgetAmps / PowerManagement.NUM_DRIVE_MOTORS,
+                PowerManagement.MIN_DRIVE_CURRENT_LIMIT_AMPS,
+                ModuleConstants.DRIVING_MOTOR_CURRENT_LIMIT_AMPS);
+
+    // Current limits are a config write, so only change them in coarse steps
+    if (Math.abs(desiredLimitAmps - driveCurrentLimitAmps)
+            >= PowerManagement.CURRENT_LIMIT_STEP_AMPS
+        || (desiredLimitAmps == ModuleConstants.DRIVING_MOTOR_CURRENT_LIMIT_AMPS
+            && driveCurrentLimitAmps != desiredLimitAmps)
+        || resendDriveCurrentLimit) {
+      driveCurrentLimitAmps = desiredLimitAmps;
+      resendDriveCurrentLimit = false;
+      sendDriveCurrentLimit(driveCurrentLimitAmps);
+    }
+
+    telemetry.update();
+  }
+
+  /**
+   * Forgets that the drive current limit was sent, so it's sent again next loop. Call when a drive
+   * spark has been reset to its default limit. Safe from any thread.
+   */
+  public void invalidateDriveCurrentLimit() {
+    resendDriveCurrentLimit = true;
+  }
+
+  private void sendDriveCurrentLimit(int limitAmps) {
+    DeviceConfigExecutor.submit(
+        () -> {
+          int errors = drive.setDriveCurrentLimit(limitAmps);
+          if (errors != 0) {
+            System.out.println(
+                "Drive current limit "
+                    + limitAmps
+                    + " A failed on "
+                    + errors
+                    + " sparks, resending");
+            resendDriveCurrentLimit = true;
+          }
+        });
+  }
+
+  /** Battery voltage we'd expect if every motor pulled its full static current limit */
+  public double getPredictedUnlimitedVolts() {
+    return openCircuitVolts
+        - (PowerManagement.RESERVED_CURRENT_AMPS
+                + ModuleConstants.DRIVING_MOTOR_CURRENT_LIMIT_AMPS
+                    * PowerManagement.NUM_DRIVE_MOTORS)
+            * batteryResistanceOhms;
+  }
+
+  /**
+   * Drive torque (and so acceleration) available under the current limit, as a percentage of what
+   * the static limit allows.
+   */
+  public double getAccelHeadroomPercent() {
+    return 100.0
+        * driveCurrentLimitAmps
+        / (double) ModuleConstants.DRIVING_MOTOR_CURRENT_LIMIT_AMPS;
+  }
+}
@@ -1,5 +1,441 @@
 package frc.robot.subsystems;
 
+import edu.wpi.first.apriltag.AprilTag;
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.apriltag.AprilTagFields;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.networktables.DoubleArraySubscriber;
+import edu.wpi.first.networktables.DoubleSubscriber;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTableValue;
+import edu.wpi.first.networktables.PubSubOption;
+import edu.wpi.first.networktables.TimestampedDouble;
+import edu.wpi.first.util.sendable.SendableBuilder;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.Calibrations.TagVision;
+import frc.robot.Constants;
+import frc.robot.subsystems.drive.GyroService;
+import frc.robot.utils.TelemetryPublisher;
+import frc.robot.utils.VisionFrameQueue;
+import java.util.EnumSet;
+import java.util.List;
 
-public class TagLimelight extends SubsystemBase {}
+/**
+ * AprilTag localization from the tag limelight. The field layout is loaded once at startup and
+ * flattened into arrays indexed by tag ID, so looking up a tag is an array access rather than a
+ * search through the layout.
+ *
+ * <p>Every tag in a frame gives a robot position from its distance and bearing, using the gyro
+ * heading at the time the frame was captured (the gyro is far better at heading than one camera).
+ * The positions are averaged, weighted by how much each tag can be trusted, into one robot pose per
+ * frame. Solve time is measured for every frame.
+ *
+ * <p>Frames are taken in by a NetworkTables listener as they arrive, on the NetworkTables thread,
+ * and stamped with their capture time, using the latency values the limelight published with the
+ * same frame. Every latency update is kept for a short while, keyed by its timestamp, and a frame
+ * takes the updates nearest its own timestamp, waiting for them if they haven't arrived yet. Stale
+ * and repeated frames are dropped there, and the rest wait in a bounded queue until the drive
+ * solves them on the main thread.
+ */
+public class TagLimelight extends SubsystemBase {
+  /** Values per tag in the limelight's rawfiducials array */
+  private static final int RAW_FIDUCIAL_STRIDE = 7;
+
+  /** More tags than this in one frame are ignored */
+  private static final int MAX_TAGS_PER_FRAME = 16;
+
+  /** Latency updates kept for matching to frames, far more than arrive between two frames */
+  private static final int LATENCY_HISTORY_SIZE = 8;
+
+  private static final int ID_INDEX = 0,
+      TXNC_INDEX = 1,
+      TYNC_INDEX = 2,
+      DIST_TO_CAMERA_INDEX = 4,
+      AMBIGUITY_INDEX = 6;
+
+  // Field layout, indexed by tag ID
+  private final boolean[] tagPresent;
+  private final double[] tagXMeters;
+  private final double[] tagYMeters;
+  private final double[] tagHeadingRad;
+
+  private final DoubleArraySubscriber rawFiducialsSub;
+  private final DoubleSubscriber pipelineLatencySub;
+  private final DoubleSubscriber captureLatencySub;
+
+  private final VisionFrameQueue frameQueue =
+      new VisionFrameQueue(
+          TagVision.FRAME_QUEUE_CAPACITY, MAX_TAGS_PER_FRAME * RAW_FIDUCIAL_STRIDE);
+
+  // Only touched on the NetworkTables listener thread
+  private final LatencyHistory pipelineLatencies = new LatencyHistory();
+  private final LatencyHistory captureLatencies = new LatencyHistory();
+  private double[] pendingFrame = null;
+  private double pendingFrameTimeSec = 0.0;
+  private double lastCaptureTimestampSec = 0.0;
+  private boolean warnedUnmatchedLatency = false;
+  private volatile long numStaleFrames = 0;
+  private volatile long numDuplicateFrames = 0;
+  private volatile long numUnmatchedLatencyFrames = 0;
+
+  // Only touched on the main thread
+  private final double[] polledFrame = new double[MAX_TAGS_PER_FRAME * RAW_FIDUCIAL_STRIDE];
+
+  // Latest solution
+  private double solvedXMeters = 0.0;
+  private double solvedYMeters = 0.0;
+  private double solvedHeadingRad = 0.0;
+  private double solvedTimestampSec = 0.0;
+  private int solvedNumTags = 0;
+  private boolean lastFrameSolved = false;
+
+  // Solve timing
+  private double lastSolveMicros = 0.0;
+  private double maxSolveMicros = 0.0;
+  private double totalSolveMicros = 0.0;
+  private int numSolves = 0;
+
+  private final TelemetryPublisher telemetry = new TelemetryPublisher("Tag Limelight");
+
+  public TagLimelight() {
+    AprilTagFieldLayout layout = AprilTagFields.k2023ChargedUp.loadAprilTagLayoutField();
+    List<AprilTag> tags = layout.getTags();
+    int maxId = 0;
+    for (AprilTag tag : tags) {
+      maxId = Math.max(maxId, tag.ID);
+    }
+    tagPresent = new boolean[maxId + 1];
+    tagXMeters = new double[maxId + 1];
+    tagYMeters = new double[maxId + 1];
+    tagHeadingRad = new double[maxId + 1];
+    for (AprilTag tag : tags) {
+      tagPresent[tag.ID] = true;
+      tagXMeters[tag.ID] = tag.pose.getX();
+      tagYMeters[tag.ID] = tag.pose.getY();
+      tagHeadingRad[tag.ID] = tag.pose.getRotation().getZ();
+    }
+
+    NetworkTable table =
+        NetworkTableInstance.getDefault().getTable(Constants.TAG_LIMELIGHT_TABLE_NAME);
+    rawFiducialsSub = table.getDoubleArrayTopic("rawfiducials").subscribe(new double[0]);
+    // Every update is queued, so none are missed between frames
+    pipelineLatencySub =
+        table
+            .getDoubleTopic("tl")
+            .subscribe(
+                0.0,
+                PubSubOption.keepDuplicates(true),
+                PubSubOption.pollStorage(LATENCY_HISTORY_SIZE));
+    captureLatencySub =
+        table
+            .getDoubleTopic("cl")
+            .subscribe(
+                0.0,
+                PubSubOption.keepDuplicates(true),
+                PubSubOption.pollStorage(LATENCY_HISTORY_SIZE));
+
+    // All on the one listener thread, so a frame waiting on its latencies sees them arrive
+    NetworkTableInstance instance = NetworkTableInstance.getDefault();
+    EnumSet<NetworkTableEvent.Kind> valueEvents = EnumSet.of(NetworkTableEvent.Kind.kValueAll);
+    instance.addListener(rawFiducialsSub, valueEvents, this::onFrame);
+    instance.addListener(
+        pipelineLatencySub,
+        valueEvents,
+        event -> {
+          processPendingFrame(false);
+        });
+    instance.addListener(
+        captureLatencySub,
+        valueEvents,
+        event -> {
+          processPendingFrame(false);
+        });
+
+    initTelemetry();
+  }
+
+  private void initTelemetry() {
+    telemetry.addDouble(
+        "Dropped frames (queue full)", frameQueue::getNumDropped, TelemetryPublisher.SLOW_HZ);
+    telemetry.addDouble(
+        "Dropped frames (stale)", () -> numStaleFrames, TelemetryPublisher.SLOW_HZ);
+    telemetry.addDouble(
+        "Dropped frames (duplicate)", () -> numDuplicateFrames, TelemetryPublisher.SLOW_HZ);
+    telemetry.addDouble(
+        "Dropped frames (unmatched latency)",
+        () -> numUnmatchedLatencyFrames,
+        TelemetryPublisher.SLOW_HZ);
+  }
+
+  /** Recent values of one latency topic, keyed by their timestamps */
+  private static class LatencyHistory {
+    private final double[] timestampsSec = new double[LATENCY_HISTORY_SIZE];
+    private final double[] valuesMs = new double[LATENCY_HISTORY_SIZE];
+    private int next = 0;
+    private int size = 0;
+    private double newestTimestampSec = Double.NEGATIVE_INFINITY;
+
+    void addAll(TimestampedDouble[] updates) {
+      for (TimestampedDouble update : updates) {
+        timestampsSec[next] = update.timestamp / 1e6;
+        valuesMs[next] = update.value;
+        newestTimestampSec = Math.max(newestTimestampSec, timestampsSec[next]);
+        next = (next + 1) % LATENCY_HISTORY_SIZE;
+        size = Math.min(size + 1, LATENCY_HISTORY_SIZE);
+      }
+    }
+
+    /** The value with the timestamp nearest to timestampSec, NaN if none is within tolerance */
+    double find(double timestampSec) {
+      double bestValueMs = Double.NaN;
+      double bestErrorSec = TagVision.LATENCY_MATCH_TOLERANCE_SEC;
+      for (int i = 0; i < size; i++) {
+        double errorSec = Math.abs(timestampsSec[i] - timestampSec);
+        if (errorSec <= bestErrorSec) {
+          bestErrorSec = errorSec;
+          bestValueMs = valuesMs[i];
+        }
+      }
+      return bestValueMs;
+    }
+
+    /** Whether an update from a later frame has arrived, so a match for timestampSec never will */
+    boolean hasPassed(double timestampSec) {
+      return newestTimestampSec > timestampSec + TagVision.LATENCY_MATCH_TOLERANCE_SEC;
+    }
+  }
+
+  /** Runs on the NetworkTables listener thread for every new rawfiducials value */
+  private void onFrame(NetworkTableEvent event) {
+    NetworkTableValue value = event.valueData.value;
+    double[] frame = value.getDoubleArray();
+    if (frame.length < RAW_FIDUCIAL_STRIDE) {
+      return;
+    }
+
+    // Anything still waiting has had its chance, its latencies would have come before this frame
+    processPendingFrame(true);
+
+    // For a remote publisher, this is the time the limelight set the value, converted to the FPGA
+    // time base through the NetworkTables time sync. tl and cl from the same frame are set at
+    // nearly the same time.
+    pendingFrame = frame;
+    pendingFrameTimeSec = value.getTime() / 1e6;
+    processPendingFrame(false);
+  }
+
+  /**
+   * Matches the waiting frame with its latency values and queues it. Runs on the NetworkTables
+   * listener thread.
+   *
+   * @param giveUp If the latencies aren't there yet, drop the frame rather than keep waiting
+   */
+  private void processPendingFrame(boolean giveUp) {
+    pipelineLatencies.addAll(pipelineLatencySub.readQueue());
+    captureLatencies.addAll(captureLatencySub.readQueue());
+    if (pendingFrame == null) {
+      return;
+    }
+
+    double frameTimeSec = pendingFrameTimeSec;
+    double pipelineLatencyMs = pipelineLatencies.find(frameTimeSec);
+    double captureLatencyMs = captureLatencies.find(frameTimeSec);
+    boolean pipelineMissing = Double.isNaN(pipelineLatencyMs);
+    boolean captureMissing = Double.isNaN(captureLatencyMs);
+    if (pipelineMissing || captureMissing) {
+      boolean mayStillArrive =
+          (pipelineMissing && !pipelineLatencies.hasPassed(frameTimeSec))
+              || (captureMissing && !captureLatencies.hasPassed(frameTimeSec));
+      if (mayStillArrive && !giveUp) {
+        return;
+      }
+      pendingFrame = null;
+      numUnmatchedLatencyFrames++;
+      if (!warnedUnmatchedLatency) {
+        warnedUnmatchedLatency = true;
+        System.out.println("WARNING: Tag limelight frame without matching latency, dropped");
+      }
+      return;
+    }
+
+    double[] frame = pendingFrame;
+    pendingFrame = null;
+    double latencySec = (pipelineLatencyMs + captureLatencyMs) / 1000.0;
+    double captureTimestampSec = frameTimeSec - latencySec;
+    if (Timer.getFPGATimestamp() - captureTimestampSec > TagVision.MAX_FRAME_AGE_SEC) {
+      numStaleFrames++;
+      return;
+    }
+
+    // A repeated frame has the same capture time, a new one is always later
+    if (captureTimestampSec <= lastCaptureTimestampSec) {
+      numDuplicateFrames++;
+      return;
+    }
+    lastCaptureTimestampSec = captureTimestampSec;
+
+    frameQueue.offer(frame, captureTimestampSec);
+  }
+
+  public boolean isValidTagId(int id) {
+    return id >= 0 && id < tagPresent.length && tagPresent[id];
+  }
+
+  /** Field pose of a tag, facing out of the tag */
+  public Pose2d getTagPose(int id) {
+    return new Pose2d(tagXMeters[id], tagYMeters[id], new Rotation2d(tagHeadingRad[id]));
+  }
+
+  /**
+   * Takes the oldest waiting frame off the queue and solves it. Call from the main thread until it
+   * returns false to drain the queue.
+   *
+   * @param gyroService Gives the robot heading at the time the frame was captured
+   * @return True if a frame was taken off the queue, then check {@link #hasSolvedPose()}
+   */
+  public boolean solveNextFrame(GyroService gyroService) {
+    if (!frameQueue.poll(polledFrame)) {
+      return false;
+    }
+    double captureTimestampSec = frameQueue.getPolledTimestampSec();
+    double headingRad = Math.toRadians(gyroService.getYawDegAt(captureTimestampSec));
+    lastFrameSolved =
+        solve(polledFrame, frameQueue.getPolledLength(), headingRad, captureTimestampSec);
+    return true;
+  }
+
+  /** True if the last frame taken off the queue had a usable tag */
+  public boolean hasSolvedPose() {
+    return lastFrameSolved;
+  }
+
+  /**
+   * Combines every tag in a rawfiducials array into one robot pose.
+   *
+   * @param rawFiducials [id, txnc, tync, ta, distToCamera, distToRobot, ambiguity] for each tag
+   * @param length Number of values in rawFiducials to use
+   * @param headingRad Robot heading when the frame was captured
+   * @param captureTimestampSec When the frame was captured
+   * @return True if at least one tag was usable
+   */
+  public boolean solve(
+      double[] rawFiducials, int length, double headingRad, double captureTimestampSec) {
+    long startNanos = System.nanoTime();
+
+    double cosHeading = Math.cos(headingRad);
+    double sinHeading = Math.sin(headingRad);
+    double sumWeights = 0.0;
+    double sumX = 0.0;
+    double sumY = 0.0;
+    int numTags = 0;
+
+    for (int i = 0; i + RAW_FIDUCIAL_STRIDE <= length; i += RAW_FIDUCIAL_STRIDE) {
+      int id = (int) rawFiducials[i + ID_INDEX];
+      double ambiguity = rawFiducials[i + AMBIGUITY_INDEX];
+      if (!isValidTagId(id) || ambiguity > TagVision.MAX_AMBIGUITY) {
+        continue;
+      }
+
+      // Tag position relative to the robot, in the robot frame
+      double elevationRad =
+          Math.toRadians(rawFiducials[i + TYNC_INDEX]) + Constants.TAG_LIMELIGHT_PITCH_RAD;
+      double horizontalDistMeters =
+          rawFiducials[i + DIST_TO_CAMERA_INDEX] * Math.cos(elevationRad);
+      // tx is positive to the right, which is clockwise
+      double bearingRad =
+          Constants.TAG_LIMELIGHT_YAW_RAD - Math.toRadians(rawFiducials[i + TXNC_INDEX]);
+      double tagRobotX =
+          Constants.TAG_LIMELIGHT_FORWARD_METERS + horizontalDistMeters * Math.cos(bearingRad);
+      double tagRobotY =
+          Constants.TAG_LIMELIGHT_LEFT_METERS + horizontalDistMeters * Math.sin(bearingRad);
+
+      // Robot position = tag position - (tag relative to robot, rotated into the field frame)
+      double robotX = tagXMeters[id] - (cosHeading * tagRobotX - sinHeading * tagRobotY);
+      double robotY = tagYMeters[id] - (sinHeading * tagRobotX + cosHeading * tagRobotY);
+
+      // Far and ambiguous tags count for less
+      double weight =
+          (1.0 - ambiguity)
+              / Math.max(
+                  horizontalDistMeters * horizontalDistMeters, TagVision.MIN_WEIGHT_DIST_SQ_METERS);
+      sumWeights += weight;
+      sumX += weight * robotX;
+      sumY += weight * robotY;
+      numTags++;
+    }
+
+    boolean solved = sumWeights > 0.0;
+    if (solved) {
+      solvedXMeters = sumX / sumWeights;
+      solvedYMeters = sumY / sumWeights;
+      solvedHeadingRad = headingRad;
+      solvedTimestampSec = captureTimestampSec;
+      solvedNumTags = numTags;
+    }
+
+    lastSolveMicros = (System.nanoTime() - startNanos) / 1000.0;
+    maxSolveMicros = Math.max(maxSolveMicros, lastSolveMicros);
+    totalSolveMicros += lastSolveMicros;
+    numSolves++;
+    return solved;
+  }
+
+  public Pose2d getSolvedPose() {
+    return new Pose2d(solvedXMeters, solvedYMeters, new Rotation2d(solvedHeadingRad));
+  }
+
+  /** When the frame of the latest solution was captured */
+  public double getSolvedTimestampSec() {
+    return solvedTimestampSec;
+  }
+
+  /** Number of tags that went into the latest solution */
+  public int getSolvedNumTags() {
+    return solvedNumTags;
+  }
+
+  @Override
+  public void initSendable(SendableBuilder builder) {
+    super.initSendable(builder);
+    builder.addDoubleProperty(
+        "Solved X (m)",
+        () -> {
+          return solvedXMeters;
+        },
+        null);
+    builder.addDoubleProperty(
+        "Solved Y (m)",
+        () -> {
+          return solvedYMeters;
+        },
+        null);
+    builder.addIntegerProperty("Solved num tags", this::getSolvedNumTags, null);
+    builder.addDoubleProperty(
+        "Last solve (us)",
+        () -> {
+          return lastSolveMicros;
+        },
+        null);
+    builder.addDoubleProperty(
+        "Max solve (us)",
+        () -> {
+          return maxSolveMicros;
+        },
+        null);
+    builder.addDoubleProperty(
+        "Average solve (us)",
+        () -> {
+          return numSolves == 0 ? 0.0 : totalSolveMicros / numSolves;
+        },
+        null);
+  }
+
+  @Override
+  public void periodic() {
+    telemetry.update();
+  }
+}
@@ -6,25 +6,29 @@ package frc.robot.subsystems.arm;
 
 import com.revrobotics.AbsoluteEncoder;
 import com.revrobotics.CANSparkMax;
+import com.revrobotics.CANSparkBase.FaultID;
 import com.revrobotics.CANSparkBase.IdleMode;
 import com.revrobotics.CANSparkBase.SoftLimitDirection;
 import com.revrobotics.CANSparkMaxLowLevel.MotorType;
+import com.revrobotics.REVLibError;
 import com.revrobotics.RelativeEncoder;
 import com.revrobotics.SparkMaxAbsoluteEncoder.Type;
 import edu.wpi.first.math.controller.ProfiledPIDController;
 import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.util.sendable.SendableBuilder;
 import edu.wpi.first.wpilibj.Timer;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
-import edu.wpi.first.wpilibj2.command.PrintCommand;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
-import frc.robot.Calibrations;
 import frc.robot.RobotMap;
+import frc.robot.subsystems.DeviceHealth;
+import frc.robot.utils.CalibrationStore;
+import frc.robot.utils.DeviceConfigExecutor;
 import frc.robot.utils.ScoringLocationUtil;
 import frc.robot.utils.ScoringLocationUtil.ScoreHeight;
 import frc.robot.utils.SendableHelper;
 import frc.robot.utils.SparkMaxUtils;
-import java.util.TreeMap;
+import frc.robot.utils.TrimJournal;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Arm extends SubsystemBase {
 
@@ -46,41 +50,100 @@ public class Arm extends SubsystemBase {
   private ArmPosition desiredPosition = ArmPosition.STARTING;
   public boolean cancelledScore = false;
 
-  TreeMap<ArmPosition, Double> armPositionMap;
+  /** ArmCal angle of each position in degrees, indexed by ArmPosition ordinal */
+  private final double[] armDefaultPositionsDeg = new double[ArmPosition.values().length];
+
+  /** Trim added to each position in degrees, indexed by ArmPosition ordinal */
+  private final double[] armTrimsDeg = new double[ArmPosition.values().length];
+
+  /**
+   * Trims to the positions, kept across reboots. Offsets rather than angles, so a change to an
+   * ArmCal position still takes effect with the trim on top of it.
+   */
+  private final TrimJournal armTrimJournal = new TrimJournal("arm_trim_offsets.journal");
+
+  private static final TrapezoidProfile.Constraints ARM_CONSTRAINTS =
+      new TrapezoidProfile.Constraints(
+          ArmCal.ARM_MAX_VELOCITY_DEG_PER_SECOND,
+          ArmCal.ARM_MAX_ACCELERATION_DEG_PER_SECOND_SQUARED);
 
   /** Input deg, output Volts */
   private ProfiledPIDController armController =
-      new ProfiledPIDController(
-          ArmCal.ARM_P,
-          ArmCal.ARM_I,
-          ArmCal.ARM_D,
-          new TrapezoidProfile.Constraints(
-              ArmCal.ARM_MAX_VELOCITY_DEG_PER_SECOND,
-              ArmCal.ARM_MAX_ACCELERATION_DEG_PER_SECOND_SQUARED));
+      new ProfiledPIDController(ArmCal.ARM_P, ArmCal.ARM_I, ArmCal.ARM_D, ARM_CONSTRAINTS);
+
+  /** Same profile the controller follows, used to predict when the arm will arrive */
+  private final TrapezoidProfile arrivalProfile = new TrapezoidProfile(ARM_CONSTRAINTS);
 
   private double mostRecentArmPID = 0.0;
   private double mostRecentArmFF = 0.0;
 
+  private final ArmStateEstimator armStateEstimator = new ArmStateEstimator();
+  private double lastEstimatorTimestampSec = Timer.getFPGATimestamp();
+
+  /** True while the estimate is held because the arm spark rebooted or isn't seeded yet */
+  private boolean estimatorHeld = false;
+
+  /**
+   * Counts spark configurations. The relative encoder needs seeding after each one, and is seeded
+   * once seededConfigNumber catches up. Both are written off the main thread on a reinit.
+   */
+  private final AtomicInteger configNumber = new AtomicInteger(0);
+
+  private volatile int seededConfigNumber = 0;
+  private volatile double configuredTimestampSec = 0.0;
+  private final AtomicBoolean seedInFlight = new AtomicBoolean(false);
+
+  /** Alternative to the PID, chosen from the dashboard. Null until the arm's MOI is measured */
+  private final ArmStateSpaceController armStateSpaceController =
+      ArmConstants.ARM_MOI_KG_METERS_SQ > 0.0 ? new ArmStateSpaceController() : null;
+
+  private boolean useStateSpaceController = false;
+  private double lastControlTimestampSec = Timer.getFPGATimestamp();
+
+  // Settle time and overshoot of the most recent move, for comparing the controllers
+  private double moveGoalDeg = Double.NaN;
+  private double moveStartTimestampSec = 0.0;
+  private double moveStartDeg = 0.0;
+  private boolean moveSettled = true;
+  private double moveOvershootDeg = 0.0;
+  private double lastSettleTimeSec = 0.0;
+  private double lastOvershootDeg = 0.0;
+
   public Arm(ScoringLocationUtil scoreLoc) {
 
-    SparkMaxUtils.initWithRetry(this::initSparks, Calibrations.SPARK_INIT_RETRY_ATTEMPTS);
+    initSparks();
 
-    armPositionMap = new TreeMap<ArmPosition, Double>();
-    armPositionMap.put(ArmPosition.STARTING, ArmCal.ARM_START_POSITION_DEG);
-    armPositionMap.put(ArmPosition.INTAKE, ArmCal.ARM_INTAKE_POSITION_DEG);
-    armPositionMap.put(ArmPosition.SCORE_LOW, ArmCal.ARM_LOW_POSITION_DEG);
-    armPositionMap.put(ArmPosition.SCORE_MID_HIGH, ArmCal.ARM_HIGH_MID_POSITION_DEG);
-    armPositionMap.put(ArmPosition.AVOID_LIMELIGHT, ArmCal.ARM_AVOID_LIMELIGHT_POSITION_DEG);
+    loadPosition(ArmPosition.STARTING, ArmCal.ARM_START_POSITION_DEG);
+    loadPosition(ArmPosition.INTAKE, ArmCal.ARM_INTAKE_POSITION_DEG);
+    loadPosition(ArmPosition.SCORE_LOW, ArmCal.ARM_LOW_POSITION_DEG);
+    loadPosition(ArmPosition.SCORE_MID_HIGH, ArmCal.ARM_HIGH_MID_POSITION_DEG);
+    loadPosition(ArmPosition.AVOID_LIMELIGHT, ArmCal.ARM_AVOID_LIMELIGHT_POSITION_DEG);
 
     this.scoreLoc = scoreLoc;
   }
 
+  /** Uses the trimmed angle from the journal if there is one */
+  private void loadPosition(ArmPosition pos, double defaultDeg) {
+    armDefaultPositionsDeg[pos.ordinal()] = defaultDeg;
+    armTrimsDeg[pos.ordinal()] = armTrimJournal.get(pos.name(), 0.0);
+  }
+
+  /** Angle of a position in degrees, including any trim */
+  public double getPositionDeg(ArmPosition pos) {
+    return armDefaultPositionsDeg[pos.ordinal()] + armTrimsDeg[pos.ordinal()];
+  }
+
   public void initialize() {
-    SparkMaxUtils.initWithRetry(this::initSparks, Calibrations.SPARK_INIT_RETRY_ATTEMPTS);
+    initSparks();
     initControlLoop();
   }
 
+  public void registerDeviceHealth(DeviceHealth deviceHealth) {
+    deviceHealth.register("Arm", armMotor, this::initSparks);
+  }
+
   public void initControlLoop(){
+    resetArmStateEstimator();
     armController.setTolerance(ArmCal.ARM_ALLOWED_CLOSED_LOOP_ERROR_DEG);
     armController.reset(this.getArmAngle());
     armController.setGoal(this.getArmAngle());
@@ -98,7 +161,7 @@ public class Arm extends SubsystemBase {
 
   /** True if the arm is at the queried position. */
   public boolean atPosition(ArmPosition positionToCheck) {
-    double armPositionToCheckDegrees = armPositionMap.get(positionToCheck);
+    double armPositionToCheckDegrees = getPositionDeg(positionToCheck);
     double armPositionDegrees = getArmAngle();
 
     return Math.abs(armPositionDegrees - armPositionToCheckDegrees) <= ArmCal.ARM_MARGIN_DEGREES;
@@ -108,51 +171,173 @@ public class Arm extends SubsystemBase {
   public double getArmAngleRelativeToHorizontal() {
     return getArmAngle() - ArmConstants.ARM_POSITION_WHEN_HORIZONTAL_DEGREES;
   }
-  /** Returns the arm angle with the zero value applied */
+  /** Returns the estimated arm angle, fused from both encoders */
   public double getArmAngle() {
+    return armStateEstimator.getAngleDeg();
+  }
+
+  /** Returns the absolute encoder arm angle with the zero value applied */
+  public double getAbsoluteArmAngle() {
     return armAbsoluteEncoder.getPosition() - ArmCal.armAbsoluteEncoderZeroPosDeg;
   }
 
+  /** Returns the estimated arm velocity, from the motor encoder */
+  public double getArmVelocityDegPerSec() {
+    return armStateEstimator.getVelocityDegPerSec();
+  }
+
+  /**
+   * A rebooted spark's relative encoder restarts from zero, which the estimator would take for a
+   * belt slip, and then jumps again when it's seeded. So the estimate is held while the spark's
+   * sticky has-reset fault is set (DeviceHealth clears it once the reinit is done) and until the
+   * encoder is seeded, and the estimator and controller start over from the seeded encoder after
+   * that.
+   */
+  private void updateArmStateEstimator() {
+    if (armMotor.getStickyFault(FaultID.kHasReset) || seededConfigNumber != configNumber.get()) {
+      estimatorHeld = true;
+      return;
+    }
+    boolean released = estimatorHeld;
+    estimatorHeld = false;
+    if (released) {
+      resetArmStateEstimator();
+    }
+
+    double nowSec = Timer.getFPGATimestamp();
+    armStateEstimator.update(
+        getAbsoluteArmAngle(),
+        armRelativeEncoder.getPosition(),
+        armRelativeEncoder.getVelocity(),
+        nowSec - lastEstimatorTimestampSec);
+    lastEstimatorTimestampSec = nowSec;
+
+    if (released) {
+      System.out.println("Arm spark reconfigured, restarting the estimator and controller");
+      resetControllers();
+    }
+  }
+
+  private void resetArmStateEstimator() {
+    armStateEstimator.reset(getAbsoluteArmAngle(), armRelativeEncoder.getPosition());
+    lastEstimatorTimestampSec = Timer.getFPGATimestamp();
+  }
+
+  /** Starts whichever controller is in use from the arm's current state, keeping the goal */
+  private void resetControllers() {
+    armController.reset(getArmAngle(), getArmVelocityDegPerSec());
+    if (useStateSpaceController) {
+      armStateSpaceController.reset(getArmAngle(), getArmVelocityDegPerSec());
+    }
+  }
+
   /** Sends set the goal and desired information */
   public void goToPosition(ArmPosition pos) {
-    armController.setGoal(armPositionMap.get(pos));
+    armController.setGoal(getPositionDeg(pos));
     desiredPosition = pos;
   }
 
   /** Approach desired arm position */
   public void approachDesiredPosition() {
+    // Always run the PID, it also advances the profile
     double armDemandVoltsA = armController.calculate(getArmAngle());
-    double armDemandVoltsB =
-        ArmCal.ARM_FEEDFORWARD.calculate(
-            getArmAngleRelativeToHorizontal() * (Math.PI / 180.0),
-            armController.getSetpoint().velocity * (Math.PI / 180.0));
+    double armDemandVoltsB;
+    double nowSec = Timer.getFPGATimestamp();
+    double dtSec = nowSec - lastControlTimestampSec;
+    lastControlTimestampSec = nowSec;
+    if (useStateSpaceController) {
+      armDemandVoltsA =
+          armStateSpaceController.calculate(getArmAngle(), armController.getSetpoint(), dtSec);
+      // The state-space model covers velocity, only gravity is left
+      armDemandVoltsB =
+          ArmCal.ARM_FEEDFORWARD.calculate(
+              getArmAngleRelativeToHorizontal() * (Math.PI / 180.0), 0.0);
+    } else {
+      armDemandVoltsB =
+          ArmCal.ARM_FEEDFORWARD.calculate(
+              getArmAngleRelativeToHorizontal() * (Math.PI / 180.0),
+              armController.getSetpoint().velocity * (Math.PI / 180.0));
+    }
+    trackMove();
     // armMotor.setVoltage(armDemandVoltsA + armDemandVoltsB);
     // armMotor.setVoltage(0);
-    SmartDashboard.putNumber("Arm PID", armDemandVoltsA);
-    SmartDashboard.putNumber("Arm FF", armDemandVoltsB);
     mostRecentArmPID = armDemandVoltsA;
     mostRecentArmFF = armDemandVoltsB;
   }
 
-  public void deployArmLessFar() {
-    Double curAngle = armPositionMap.get(desiredPosition);
-    Double newAngle = curAngle - 0.5;
-    armPositionMap.replace(desiredPosition, newAngle);
+  /** Measures settle time and overshoot each time the goal changes */
+  private void trackMove() {
+    double goalDeg = armController.getGoal().position;
+    double angleDeg = getArmAngle();
+    if (goalDeg != moveGoalDeg) {
+      moveGoalDeg = goalDeg;
+      moveStartTimestampSec = Timer.getFPGATimestamp();
+      moveStartDeg = angleDeg;
+      moveSettled = false;
+      moveOvershootDeg = 0.0;
+    }
+    if (moveSettled) {
+      return;
+    }
 
-    new PrintCommand("Latest angle for " + desiredPosition + ": " + newAngle);
+    // Overshoot is how far past the goal the arm got, in the direction it was moving
+    double pastGoalDeg = Math.copySign(1.0, goalDeg - moveStartDeg) * (angleDeg - goalDeg);
+    moveOvershootDeg = Math.max(moveOvershootDeg, pastGoalDeg);
+
+    if (Math.abs(goalDeg - angleDeg) < ArmCal.ARM_ALLOWED_CLOSED_LOOP_ERROR_DEG
+        && Math.abs(getArmVelocityDegPerSec()) < ArmCal.ARM_SETTLED_VELOCITY_DEG_PER_SEC) {
+      moveSettled = true;
+      lastSettleTimeSec = Timer.getFPGATimestamp() - moveStartTimestampSec;
+      lastOvershootDeg = moveOvershootDeg;
+      System.out.println(
+          "Arm ("
+              + (useStateSpaceController ? "LQR" : "PID")
+              + ") settled in "
+              + lastSettleTimeSec
+              + " s, overshoot "
+              + lastOvershootDeg
+              + " deg");
+    }
+  }
 
-    armController.setGoal(newAngle);
+  /** Switches between the PID and the state-space controller, starting it from the arm's state */
+  public void setUseStateSpaceController(boolean useStateSpace) {
+    if (useStateSpace && armStateSpaceController == null) {
+      System.out.println("Arm MOI isn't set, can't use the LQR controller");
+      return;
+    }
+    if (useStateSpace && !useStateSpaceController) {
+      armStateSpaceController.reset(getArmAngle(), getArmVelocityDegPerSec());
+    } else if (!useStateSpace && useStateSpaceController) {
+      armController.reset(getArmAngle(), getArmVelocityDegPerSec());
+    }
+    useStateSpaceController = useStateSpace;
   }
 
-  public void deployArmFurther() {
-    Double curAngle = armPositionMap.get(desiredPosition);
-    Double newAngle = curAngle + 0.5;
-    armPositionMap.replace(desiredPosition, newAngle);
+  public boolean getUseStateSpaceController() {
+    return useStateSpaceController;
+  }
+
+  /** Moves the desired position and the goal by trimDeg, and saves the new trim */
+  private void trimDesiredPosition(double trimDeg) {
+    double newTrim = armTrimsDeg[desiredPosition.ordinal()] + trimDeg;
+    armTrimsDeg[desiredPosition.ordinal()] = newTrim;
+    armTrimJournal.append(desiredPosition.name(), newTrim);
 
-    new PrintCommand("Latest angle for " + desiredPosition + ": " + newAngle);
+    double newAngle = getPositionDeg(desiredPosition);
+    System.out.println(
+        "Latest angle for " + desiredPosition + ": " + newAngle + " (trim " + newTrim + ")");
 
     armController.setGoal(newAngle);
   }
+
+  public void deployArmLessFar() {
+    trimDesiredPosition(-ArmCal.ARM_TRIM_STEP_DEG);
+  }
+
+  public void deployArmFurther() {
+    trimDesiredPosition(ArmCal.ARM_TRIM_STEP_DEG);
+  }
   /**
    * takes the column and height from ScoringLocationUtil.java and converts that to a ArmPosition
    * then gives the position to the given arm
@@ -178,46 +363,48 @@ public class Arm extends SubsystemBase {
 
   public void zeroArmAtCurrentPos() {
     ArmCal.armAbsoluteEncoderZeroPosDeg = armAbsoluteEncoder.getPosition();
+    CalibrationStore.putDouble(
+        CalibrationStore.ARM_ABSOLUTE_ENCODER_ZERO_POS_DEG, ArmCal.armAbsoluteEncoderZeroPosDeg);
     System.out.println("New Zero for Arm: " + ArmCal.armAbsoluteEncoderZeroPosDeg);
+    resetArmStateEstimator();
   }
 
-  /**
-   * @return the number of errors made when setting up the sparks
-   */
-  public int setDegreesFromGearRatioAbsoluteEncoder(AbsoluteEncoder sparkMaxEncoder, double ratio) {
-    int errors = 0;
-    double degreesPerRotation = 360.0 / ratio;
-    errors += SparkMaxUtils.check(sparkMaxEncoder.setPositionConversionFactor(degreesPerRotation));
-    errors += SparkMaxUtils.check(sparkMaxEncoder.setVelocityConversionFactor(degreesPerRotation));
-    return errors;
+  /** True if the arm is at the queried position. */
+  public boolean atDesiredArmPosition() {
+    double armPositionToCheckDegrees = getPositionDeg(desiredPosition);
+    double armPositionDegrees = getArmAngle();
+    return Math.abs(armPositionDegrees - armPositionToCheckDegrees) <= ArmCal.ARM_MARGIN_DEGREES;
   }
 
   /**
-   * @return the number of errors made when setting up the sparks
+   * Time for the arm to reach the desired position, 0 if it's already there. Estimated from both
+   * where the profile says the arm should be and where the arm actually is, and the later of the
+   * two wins, so an arm lagging its profile (e.g. under load or at low battery) isn't reported as
+   * nearly there.
    */
-  public static int setDegreesFromGearRatioRelativeEncoder(
-      RelativeEncoder sparkMaxEncoder, double ratio) {
-
-    int errors = 0;
-    double degreesPerRotation = 360.0 / ratio;
-    double degreesPerRotationPerSecond = degreesPerRotation / 60.0;
-    errors += SparkMaxUtils.check(sparkMaxEncoder.setPositionConversionFactor(degreesPerRotation));
-    errors +=
-        SparkMaxUtils.check(
-            sparkMaxEncoder.setVelocityConversionFactor(degreesPerRotationPerSecond));
-
-    return errors;
+  public double getPredictedSecondsToDesiredPosition() {
+    arrivalProfile.calculate(0.0, armController.getSetpoint(), armController.getGoal());
+    double fromSetpointSec = arrivalProfile.totalTime();
+    arrivalProfile.calculate(
+        0.0,
+        new TrapezoidProfile.State(getArmAngle(), getArmVelocityDegPerSec()),
+        armController.getGoal());
+    double fromMeasuredSec = arrivalProfile.totalTime();
+    return Math.max(fromSetpointSec, fromMeasuredSec);
   }
 
-  /** True if the arm is at the queried position. */
-  public boolean atDesiredArmPosition() {
-    double armPositionToCheckDegrees = armPositionMap.get(desiredPosition);
-    double armPositionDegrees = getArmAngle();
-    return Math.abs(armPositionDegrees - armPositionToCheckDegrees) <= ArmCal.ARM_MARGIN_DEGREES;
+  /**
+   * True if the arm is predicted to reach the desired position within the given time. Lets
+   * sequences start the next step while the arm is still finishing its move.
+   */
+  public boolean willReachDesiredPositionWithin(double seconds) {
+    return getPredictedSecondsToDesiredPosition() <= seconds;
   }
 
   @Override
   public void periodic() {
+    seedRelativeEncoderWhenDue();
+    updateArmStateEstimator();
     approachDesiredPosition();
   }
 
@@ -236,41 +423,133 @@ public class Arm extends SubsystemBase {
 
   /** Does all the initialization for the sparks */
   public boolean initSparks() {
-    int errors = 0;
-    errors += SparkMaxUtils.check(armMotor.restoreFactoryDefaults());
-
-    // inverting stuff
-    errors += SparkMaxUtils.check(armAbsoluteEncoder.setInverted(true));
-    armMotor.setInverted(true);
-
-    errors += setDegreesFromGearRatioAbsoluteEncoder(armAbsoluteEncoder, 26.0 / 24.0);
-
-    errors += SparkMaxUtils.check(armRelativeEncoder.setPosition(getArmAngle()));
-    errors +=
-        setDegreesFromGearRatioRelativeEncoder(
-            armRelativeEncoder, ArmConstants.ARM_MOTOR_GEAR_RATIO);
-
-    errors +=
-        SparkMaxUtils.check(
-            armMotor.setSoftLimit(SoftLimitDirection.kForward, ArmCal.ARM_POSITIVE_LIMIT_DEGREES));
-
-    errors +=
-        SparkMaxUtils.check(
-            armMotor.setSoftLimit(SoftLimitDirection.kForward, ArmCal.ARM_POSITIVE_LIMIT_DEGREES));
-
-    errors += SparkMaxUtils.check(armMotor.enableSoftLimit(SoftLimitDirection.kForward, false));
-
-    errors +=
-        SparkMaxUtils.check(
-            armMotor.setSoftLimit(SoftLimitDirection.kReverse, ArmCal.ARM_NEGATIVE_LIMIT_DEGREES));
-
-    errors += SparkMaxUtils.check(armMotor.enableSoftLimit(SoftLimitDirection.kReverse, false));
-
-    errors += SparkMaxUtils.check(armMotor.setIdleMode(IdleMode.kBrake));
+    double absDegPerRotation = 360.0 / (26.0 / 24.0);
+    double relDegPerRotation = 360.0 / ArmConstants.ARM_MOTOR_GEAR_RATIO;
+
+    boolean configured =
+        new SparkMaxUtils.Config("Arm spark " + armMotor.getDeviceId())
+            .restoreDefaults(armMotor::restoreFactoryDefaults)
+            // inverting stuff
+            .step(
+                "abs encoder inverted",
+                () -> armAbsoluteEncoder.setInverted(true),
+                armAbsoluteEncoder::getInverted)
+            .step(
+                "inverted",
+                () -> {
+                  armMotor.setInverted(true);
+                  return armMotor.getLastError();
+                },
+                armMotor::getInverted)
+            .step(
+                "abs position factor",
+                () -> armAbsoluteEncoder.setPositionConversionFactor(absDegPerRotation),
+                armAbsoluteEncoder::getPositionConversionFactor,
+                absDegPerRotation)
+            .step(
+                "abs velocity factor",
+                () -> armAbsoluteEncoder.setVelocityConversionFactor(absDegPerRotation),
+                armAbsoluteEncoder::getVelocityConversionFactor,
+                absDegPerRotation)
+            .step(
+                "rel position factor",
+                () -> armRelativeEncoder.setPositionConversionFactor(relDegPerRotation),
+                armRelativeEncoder::getPositionConversionFactor,
+                relDegPerRotation)
+            .step(
+                "rel velocity factor",
+                () -> armRelativeEncoder.setVelocityConversionFactor(relDegPerRotation / 60.0),
+                armRelativeEncoder::getVelocityConversionFactor,
+                relDegPerRotation / 60.0)
+            .step(
+                "forward limit",
+                () ->
+                    armMotor.setSoftLimit(
+                        SoftLimitDirection.kForward, ArmCal.ARM_POSITIVE_LIMIT_DEGREES),
+                () -> armMotor.getSoftLimit(SoftLimitDirection.kForward),
+                ArmCal.ARM_POSITIVE_LIMIT_DEGREES)
+            .step(
+                "forward limit disabled",
+                () -> armMotor.enableSoftLimit(SoftLimitDirection.kForward, false),
+                () -> {
+                  return !armMotor.isSoftLimitEnabled(SoftLimitDirection.kForward);
+                })
+            .step(
+                "reverse limit",
+                () ->
+                    armMotor.setSoftLimit(
+                        SoftLimitDirection.kReverse, ArmCal.ARM_NEGATIVE_LIMIT_DEGREES),
+                () -> armMotor.getSoftLimit(SoftLimitDirection.kReverse),
+                ArmCal.ARM_NEGATIVE_LIMIT_DEGREES)
+            .step(
+                "reverse limit disabled",
+                () -> armMotor.enableSoftLimit(SoftLimitDirection.kReverse, false),
+                () -> {
+                  return !armMotor.isSoftLimitEnabled(SoftLimitDirection.kReverse);
+                })
+            .step(
+                "idle mode",
+                () -> armMotor.setIdleMode(IdleMode.kBrake),
+                () -> {
+                  return armMotor.getIdleMode() == IdleMode.kBrake;
+                })
+            .step(
+                "current limit",
+                () -> armMotor.setSmartCurrentLimit(ArmCal.ARM_CURRENT_LIMIT_AMPS))
+            .apply();
+    // Seeded after apply() rather than as a step: if a conversion factor step failed and was
+    // retried, a seed taken before the retry would be in the wrong units
+    if (configured) {
+      configuredTimestampSec = Timer.getFPGATimestamp();
+      configNumber.incrementAndGet();
+    }
+    return configured;
+  }
 
-    errors += SparkMaxUtils.check(armMotor.setSmartCurrentLimit(ArmCal.ARM_CURRENT_LIMIT_AMPS));
+  /**
+   * The absolute position comes in a periodic status frame, so the seed waits for a frame sent
+   * since the conversion factor changed. Waiting here rather than in initSparks keeps the sleep off
+   * boot and out of the device config queue, and several configurations in a row (as at boot) get
+   * one seed.
+   */
+  private void seedRelativeEncoderWhenDue() {
+    int number = configNumber.get();
+    if (seededConfigNumber == number
+        || Timer.getFPGATimestamp() - configuredTimestampSec
+            < ArmConstants.ABS_ENCODER_STATUS_PERIOD_SEC
+        || !seedInFlight.compareAndSet(false, true)) {
+      return;
+    }
+    DeviceConfigExecutor.submit(
+        () -> {
+          try {
+            if (seedRelativeEncoder()) {
+              seededConfigNumber = number;
+            }
+          } finally {
+            seedInFlight.set(false);
+          }
+        });
+  }
 
-    return errors == 0;
+  /**
+   * Sets the relative encoder to the absolute arm angle and checks it took, once the next encoder
+   * status frame is in. Runs on the device config thread; a failed seed is tried again next loop.
+   */
+  private boolean seedRelativeEncoder() {
+    double seedDeg = getAbsoluteArmAngle();
+    if (armRelativeEncoder.setPosition(seedDeg) != REVLibError.kOk) {
+      System.out.println("Arm encoder seed failed: " + armMotor.getLastError());
+      return false;
+    }
+    Timer.delay(ArmConstants.ENCODER_STATUS_PERIOD_SEC);
+    double errorDeg = armRelativeEncoder.getPosition() - seedDeg;
+    if (Math.abs(errorDeg) >= ArmCal.ARM_ENCODER_SEED_TOLERANCE_DEG) {
+      System.out.println("Arm encoder seed didn't take, off by " + errorDeg + " deg");
+      return false;
+    }
+    System.out.println("Arm encoder seeded to " + seedDeg + " deg");
+    return true;
   }
 
   /**
@@ -290,11 +569,29 @@ public class Arm extends SubsystemBase {
     builder.addDoubleProperty("Arm Abs Position (deg)", armAbsoluteEncoder::getPosition, null);
 
     builder.addDoubleProperty("Arm Angle (deg)", this::getArmAngle, null);
+    builder.addDoubleProperty("Arm Abs Angle (deg)", this::getAbsoluteArmAngle, null);
+    builder.addDoubleProperty(
+        "Arm Encoder Disagreement (deg)", armStateEstimator::getDisagreementDeg, null);
+    builder.addIntegerProperty("Arm Belt Slips", armStateEstimator::getNumSlips, null);
 
     builder.addBooleanProperty("Is cancelled", this::getCancelScore, this::setCancelScore);
+    builder.addBooleanProperty(
+        "Use LQR controller", this::getUseStateSpaceController, this::setUseStateSpaceController);
+    builder.addDoubleProperty(
+        "Last settle time (s)",
+        () -> {
+          return lastSettleTimeSec;
+        },
+        null);
+    builder.addDoubleProperty(
+        "Last overshoot (deg)",
+        () -> {
+          return lastOvershootDeg;
+        },
+        null);
     // builder.addDoubleProperty(
     //     "Arm Position (deg)", () -> {return armMotor.getEncoder().getPosition();}, null);
-    builder.addDoubleProperty("Arm Vel (deg per s)", armAbsoluteEncoder::getVelocity, null);
+    builder.addDoubleProperty("Arm Vel (deg per s)", this::getArmVelocityDegPerSec, null);
 
     builder.addDoubleProperty("Arm output", armMotor::get, null);
     builder.addDoubleProperty(
@@ -317,6 +614,10 @@ public class Arm extends SubsystemBase {
         },
         null);
     builder.addBooleanProperty("At desired arm position", this::atDesiredArmPosition, null);
+    builder.addDoubleProperty(
+        "Predicted time to desired position (s)",
+        this::getPredictedSecondsToDesiredPosition,
+        null);
 
     builder.addStringProperty(
         "Desired position",
@@ -1,6 +1,7 @@
 package frc.robot.subsystems.arm;
 
 import edu.wpi.first.math.controller.ArmFeedforward;
+import frc.robot.utils.CalibrationStore;
 
 public class ArmCal {
   public static final double PLACEHOLDER_DOUBLE = 0.0;
@@ -21,16 +22,26 @@ public class ArmCal {
   // deg / 2pi
   // rad) = 39893 deg/s^2
 
-  /** Arm positions in degrees for the armPositionMap */
+  /** Arm positions in degrees, the defaults before any trims */
   public static final double ARM_START_POSITION_DEG = 180.0,
       ARM_INTAKE_POSITION_DEG = 90.0,
       ARM_LOW_POSITION_DEG = 240.0,
       ARM_HIGH_MID_POSITION_DEG = 210.0,
       ARM_AVOID_LIMELIGHT_POSITION_DEG = 250.0;
 
-  /** Absolute encoder position when the arm is at 0 degrees */
+  /** How far one press of the trim buttons moves the current position */
+  public static final double ARM_TRIM_STEP_DEG = 0.5;
+
+  /** Absolute encoder position when the arm is at 0 degrees, default until one is stored */
   public static double armAbsoluteEncoderZeroPosDeg = -45.1;
 
+  /** Replaces the defaults with stored values, call before the arm is made */
+  public static void loadStoredCalibrations() {
+    armAbsoluteEncoderZeroPosDeg =
+        CalibrationStore.getDouble(
+            CalibrationStore.ARM_ABSOLUTE_ENCODER_ZERO_POS_DEG, armAbsoluteEncoderZeroPosDeg);
+  }
+
   /**
    * Margin for when we consider the arm has reached a position. This is logical (for considering
    * where the arm can go) but not functional (does not stop anything when reached). We apply
@@ -41,6 +52,34 @@ public class ArmCal {
   // functional not logical
   public static final double ARM_ALLOWED_CLOSED_LOOP_ERROR_DEG = 1.0;
 
+  /** How quickly the arm angle estimate is pulled towards the absolute encoder */
+  public static final double ARM_ABS_CORRECTION_TIME_CONSTANT_SEC = 0.5;
+
+  /** The belt has slipped if the encoders disagree by this much for this long */
+  public static final double ARM_SLIP_THRESHOLD_DEG = 3.0, ARM_SLIP_DEBOUNCE_SEC = 0.1;
+
+  /**
+   * A relative encoder seed has taken if the encoder reads back this close to it, allowing for the
+   * arm moving in the frame period it takes to read back
+   */
+  public static final double ARM_ENCODER_SEED_TOLERANCE_DEG = 1.0;
+
+  /** Arm counts as settled inside the allowed error and below this speed */
+  public static final double ARM_SETTLED_VELOCITY_DEG_PER_SEC = 5.0;
+
+  /** State-space controller: how much the model and the measurement are trusted */
+  public static final double ARM_LQR_MODEL_ANGLE_STD_DEV_RAD = 0.015,
+      ARM_LQR_MODEL_VELOCITY_STD_DEV_RAD_PER_SEC = 0.17,
+      ARM_LQR_MEASUREMENT_STD_DEV_RAD = 0.01;
+
+  /**
+   * State-space controller: errors worth the max voltage to fix. Untested, the arm motor output
+   * is commented out, so no LQR gains have driven the arm yet.
+   */
+  public static final double ARM_LQR_ANGLE_TOLERANCE_RAD = 0.02,
+      ARM_LQR_VELOCITY_TOLERANCE_RAD_PER_SEC = 0.4,
+      ARM_LQR_MAX_VOLTS = 12.0;
+
   /** Input deg/s, output volts. From recalc */
   public static final ArmFeedforward ARM_FEEDFORWARD = new ArmFeedforward(0.0, 0.53, 2.63, 0.02);
 
@@ -52,4 +91,14 @@ public class ArmCal {
   public static final double SCORE_TO_START_FAST_SEC = PLACEHOLDER_DOUBLE,
       SCORE_TO_START_SEC = PLACEHOLDER_DOUBLE,
       START_TO_PRESCORE_SEC = 5.0;
+
+  /** Start ejecting this long before the arm is predicted to reach the scoring position */
+  public static final double SCORE_EJECT_LEAD_SEC = 0.1;
+
+  /**
+   * Auto scoring hands off to the next command (e.g. driving away) once the arm is predicted to be
+   * this close to getting back to the starting position
+   */
+  public static final double SCORE_TO_START_OVERLAP_FAST_SEC = 0.5,
+      SCORE_TO_START_OVERLAP_SEC = 0.2;
 }
@@ -6,4 +6,16 @@ public class ArmConstants {
   public static final double ARM_POSITION_WHEN_HORIZONTAL_DEGREES = 90.0;
 
   public static final double ARM_MOTOR_GEAR_RATIO = 125 * (26.0 / 24.0);
+
+  /** A little over the spark's default period for the absolute encoder status frame (200 ms) */
+  public static final double ABS_ENCODER_STATUS_PERIOD_SEC = 0.25;
+
+  /** A little over the spark's default period for the motor encoder status frame (20 ms) */
+  public static final double ENCODER_STATUS_PERIOD_SEC = 0.03;
+
+  /**
+   * Arm moment of inertia about the pivot, kg m^2. Not measured yet (get it from CAD or a swing
+   * test); the state-space controller can't be turned on until it is.
+   */
+  public static final double ARM_MOI_KG_METERS_SQ = PLACEHOLDER_DOUBLE;
 }
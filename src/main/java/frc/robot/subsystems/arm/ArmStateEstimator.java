@@ -0,0 +1,78 @@
+package frc.robot.subsystems.arm;
+
+import edu.wpi.first.math.filter.Debouncer;
+import frc.robot.utils.AbsoluteEncoderChecker;
+
+/**
+ * Estimates arm angle and velocity from both encoders. The motor's relative encoder is fast and
+ * smooth but only knows where it started; the absolute encoder on the arm knows where the arm
+ * really is but is noisy and slow. This is a complementary filter: angle changes come from the
+ * relative encoder, and the offset between the two is pulled slowly towards the absolute encoder.
+ * Velocity is the relative encoder's.
+ *
+ * <p>If the two disagree by a lot for a while, the belt between the motor and the arm has slipped,
+ * and the offset is re-seeded from the absolute encoder straight away.
+ */
+public class ArmStateEstimator {
+  private final AbsoluteEncoderChecker absoluteEncoderChecker = new AbsoluteEncoderChecker();
+  private final Debouncer slipDebouncer = new Debouncer(ArmCal.ARM_SLIP_DEBOUNCE_SEC);
+
+  /** Absolute angle minus relative angle */
+  private double offsetDeg = 0.0;
+
+  private double angleDeg = 0.0;
+  private double velocityDegPerSec = 0.0;
+  private double disagreementDeg = 0.0;
+  private int numSlips = 0;
+
+  /** Start over, trusting the absolute encoder completely */
+  public void reset(double absoluteDeg, double relativeDeg) {
+    offsetDeg = absoluteDeg - relativeDeg;
+    angleDeg = absoluteDeg;
+    disagreementDeg = 0.0;
+    slipDebouncer.calculate(false);
+  }
+
+  /** Call once per loop with fresh readings from both encoders */
+  public void update(
+      double absoluteDeg, double relativeDeg, double relativeVelocityDegPerSec, double dtSec) {
+    absoluteEncoderChecker.addReading(absoluteDeg);
+    velocityDegPerSec = relativeVelocityDegPerSec;
+
+    double predictedDeg = relativeDeg + offsetDeg;
+    disagreementDeg = absoluteDeg - predictedDeg;
+
+    // A frozen absolute encoder is unplugged, not telling us the arm stopped
+    if (absoluteEncoderChecker.encoderConnected()) {
+      boolean slipped =
+          slipDebouncer.calculate(Math.abs(disagreementDeg) > ArmCal.ARM_SLIP_THRESHOLD_DEG);
+      if (slipped) {
+        numSlips++;
+        System.out.println(
+            "Arm belt slip detected, encoders off by " + disagreementDeg + " deg, re-seeding");
+        reset(absoluteDeg, relativeDeg);
+        return;
+      }
+      double gain = Math.min(1.0, dtSec / ArmCal.ARM_ABS_CORRECTION_TIME_CONSTANT_SEC);
+      offsetDeg += gain * disagreementDeg;
+    }
+    angleDeg = relativeDeg + offsetDeg;
+  }
+
+  public double getAngleDeg() {
+    return angleDeg;
+  }
+
+  public double getVelocityDegPerSec() {
+    return velocityDegPerSec;
+  }
+
+  /** How far the absolute encoder is from the estimate, before this loop's correction */
+  public double getDisagreementDeg() {
+    return disagreementDeg;
+  }
+
+  public int getNumSlips() {
+    return numSlips;
+  }
+}
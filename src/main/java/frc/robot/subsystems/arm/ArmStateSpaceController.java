@@ -0,0 +1,85 @@
+package frc.robot.subsystems.arm;
+
+import edu.wpi.first.math.Nat;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.controller.LinearQuadraticRegulator;
+import edu.wpi.first.math.estimator.KalmanFilter;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N2;
+import edu.wpi.first.math.system.LinearSystem;
+import edu.wpi.first.math.system.LinearSystemLoop;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+
+/**
+ * State-space alternative to the arm's PID controller. The plant is a single jointed arm driven by
+ * a NEO through the arm gearbox, a Kalman filter estimates angle and velocity from the measured
+ * angle, and an LQR tracks the same trapezoid profile setpoints the PID follows. The plant has no
+ * gravity in it, so the caller adds the gravity feedforward on top.
+ *
+ * <p>Units inside the loop are radians and volts; the interface is in degrees like the rest of the
+ * arm.
+ *
+ * <p>Unverified: the moment of inertia is still a placeholder and the arm's motor output is
+ * commented out, so the model and LQR gains have never been checked on the arm.
+ */
+public class ArmStateSpaceController {
+  private static final double NOMINAL_DT_SEC = 0.02;
+
+  private final LinearSystemLoop<N2, N1, N1> loop;
+
+  public ArmStateSpaceController() {
+    LinearSystem<N2, N1, N1> plant =
+        LinearSystemId.createSingleJointedArmSystem(
+            DCMotor.getNEO(1),
+            ArmConstants.ARM_MOI_KG_METERS_SQ,
+            ArmConstants.ARM_MOTOR_GEAR_RATIO);
+
+    KalmanFilter<N2, N1, N1> observer =
+        new KalmanFilter<>(
+            Nat.N2(),
+            Nat.N1(),
+            plant,
+            VecBuilder.fill(
+                ArmCal.ARM_LQR_MODEL_ANGLE_STD_DEV_RAD,
+                ArmCal.ARM_LQR_MODEL_VELOCITY_STD_DEV_RAD_PER_SEC),
+            VecBuilder.fill(ArmCal.ARM_LQR_MEASUREMENT_STD_DEV_RAD),
+            NOMINAL_DT_SEC);
+
+    LinearQuadraticRegulator<N2, N1, N1> lqr =
+        new LinearQuadraticRegulator<>(
+            plant,
+            VecBuilder.fill(
+                ArmCal.ARM_LQR_ANGLE_TOLERANCE_RAD, ArmCal.ARM_LQR_VELOCITY_TOLERANCE_RAD_PER_SEC),
+            VecBuilder.fill(ArmCal.ARM_LQR_MAX_VOLTS),
+            NOMINAL_DT_SEC);
+
+    loop =
+        new LinearSystemLoop<>(plant, lqr, observer, ArmCal.ARM_LQR_MAX_VOLTS, NOMINAL_DT_SEC);
+  }
+
+  /** Start the observer and reference from the arm's current state */
+  public void reset(double angleDeg, double velocityDegPerSec) {
+    loop.reset(VecBuilder.fill(Math.toRadians(angleDeg), Math.toRadians(velocityDegPerSec)));
+  }
+
+  /**
+   * @param measuredAngleDeg Arm angle this loop
+   * @param setpoint Profile setpoint to track, deg and deg/s
+   * @param dtSec Time since the last call
+   * @return Motor voltage, without gravity compensation
+   */
+  public double calculate(double measuredAngleDeg, TrapezoidProfile.State setpoint, double dtSec) {
+    loop.setNextR(
+        VecBuilder.fill(Math.toRadians(setpoint.position), Math.toRadians(setpoint.velocity)));
+    loop.correct(VecBuilder.fill(Math.toRadians(measuredAngleDeg)));
+    loop.predict(dtSec);
+    return loop.getU(0);
+  }
+
+  /** Observer's angle estimate */
+  public double getEstimatedAngleDeg() {
+    return Math.toDegrees(loop.getXHat(0));
+  }
+}
@@ -1,6 +1,7 @@
 package frc.robot.subsystems.drive;
 
 import edu.wpi.first.math.controller.PIDController;
+import frc.robot.utils.CalibrationStore;
 
 public class DriveCal {
   /** For the purposes of trajectory constraints */
@@ -20,34 +21,44 @@ public class DriveCal {
       VERY_SLOW_LINEAR_ACCELERATION_METERS_PER_SEC_SQ = 2.0;
 
   /**
-   * Angular offset of the modules relative to the zeroing fixture in radians. Ideally should be
-   * relative to the ficture but they are actually slightly different.
+   * Angular offsets of the modules relative to the chassis in radians, as read from the absolute
+   * encoders with the modules fixtured. These are defaults, the zeroing buttons save new ones to
+   * the {@link CalibrationStore} and {@link #loadStoredCalibrations()} reads them back at boot.
    */
   public static double SWERVE_FRONT_LEFT_ANGULAR_OFFSET_RAD = 3.575,
       SWERVE_FRONT_RIGHT_ANGULAR_OFFSET_RAD = 1.177,
       SWERVE_BACK_LEFT_ANGULAR_OFFSET_RAD = 5.235,
       SWERVE_BACK_RIGHT_ANGULAR_OFFSET_RAD = 4.677;
 
+  /** Replaces the defaults with stored values, call before the drive is made */
+  public static void loadStoredCalibrations() {
+    SWERVE_FRONT_LEFT_ANGULAR_OFFSET_RAD =
+        CalibrationStore.getDouble(
+            CalibrationStore.FRONT_LEFT_ANGULAR_OFFSET_RAD, SWERVE_FRONT_LEFT_ANGULAR_OFFSET_RAD);
+    SWERVE_FRONT_RIGHT_ANGULAR_OFFSET_RAD =
+        CalibrationStore.getDouble(
+            CalibrationStore.FRONT_RIGHT_ANGULAR_OFFSET_RAD, SWERVE_FRONT_RIGHT_ANGULAR_OFFSET_RAD);
+    SWERVE_BACK_LEFT_ANGULAR_OFFSET_RAD =
+        CalibrationStore.getDouble(
+            CalibrationStore.BACK_LEFT_ANGULAR_OFFSET_RAD, SWERVE_BACK_LEFT_ANGULAR_OFFSET_RAD);
+    SWERVE_BACK_RIGHT_ANGULAR_OFFSET_RAD =
+        CalibrationStore.getDouble(
+            CalibrationStore.BACK_RIGHT_ANGULAR_OFFSET_RAD, SWERVE_BACK_RIGHT_ANGULAR_OFFSET_RAD);
+  }
+
   /**
-   * Angular offsets of the modules relative to the chassis in radians. The modules form an O when
-   * fixtured, so they are iteratively 90 deg from each other.
+   * Heading controller for holding and snapping to a heading. Input rad, output rad/s on top of
+   * the profile velocity; D acts on the profile velocity minus the gyro rate.
    */
-  public static final double
-      FRONT_LEFT_CHASSIS_ANGULAR_OFFSET_RAD =
-          SWERVE_FRONT_LEFT_ANGULAR_OFFSET_RAD,
-      FRONT_RIGHT_CHASSIS_ANGULAR_OFFSET_RAD =
-          SWERVE_FRONT_RIGHT_ANGULAR_OFFSET_RAD,
-      BACK_LEFT_CHASSIS_ANGULAR_OFFSET_RAD =
-          SWERVE_BACK_LEFT_ANGULAR_OFFSET_RAD,
-      BACK_RIGHT_CHASSIS_ANGULAR_OFFSET_RAD =
-          SWERVE_BACK_RIGHT_ANGULAR_OFFSET_RAD;
-
-  /** Controller on module speed for rotating to target, input degrees [-180,180], output [0,1]. */
-  public static final PIDController ROTATE_TO_TARGET_PID_CONTROLLER =
-      new PIDController(0.015, 0, 0.000); // From 2023 (from 2022)
-
-  /** Feed forward for rotating to target, gets added to or subtracted from PID controller. */
-  public static final double ROTATE_TO_TARGET_FF = 0.01; // from 2023
+  public static final double HEADING_P = 5.0, HEADING_D = 0.1;
+
+  /** Heading profile constraints, snaps to D-pad directions run at these limits */
+  public static final double HEADING_MAX_VELOCITY_RAD_PER_SEC = 1.5 * Math.PI,
+      HEADING_MAX_ACCELERATION_RAD_PER_SEC_SQ = 4.0 * Math.PI;
+
+  /** The heading has settled once it is within this tolerance and rotating slower than this */
+  public static final double HEADING_SETTLED_TOLERANCE_RAD = Math.toRadians(2.0),
+      HEADING_SETTLED_RATE_RAD_PER_SEC = Math.toRadians(10.0);
 
   /** Auton path finding controllers */
   public static final PIDController PATH_X_CONTROLLER = new PIDController(9.0, 0.0, 0.0),
@@ -56,6 +67,20 @@ public class DriveCal {
   /** High profile constraints = pure P controller */
   public static final PIDController PATH_THETA_CONTROLLER = new PIDController(9.0, 0.0, 0.80);
 
+  /** Position feedback for profiled straight-line auto drives, (m/s) per meter of error */
+  public static final double AUTO_DISTANCE_P = 2.0;
+
+  /** Profiled straight-line auto drives finish within this distance of the goal */
+  public static final double AUTO_DISTANCE_TOLERANCE_METERS = 0.05;
+
+  /** Profile constraints for aligning to a scoring location */
+  public static final double ALIGN_MAX_VELOCITY_METERS_PER_SEC = 2.0,
+      ALIGN_MAX_ACCELERATION_METERS_PER_SEC_SQ = 3.0;
+
+  /** Aligning to a scoring location finishes once within these tolerances */
+  public static final double ALIGN_TRANSLATION_TOLERANCE_METERS = 0.03,
+      ALIGN_HEADING_TOLERANCE_RAD = Math.toRadians(2.0);
+
   /** If the desired chassis rotation is below this value in [0,1], it is ignored */
   public static final double ROTATION_DEADBAND_THRESHOLD = 0.04;
 
@@ -66,6 +91,30 @@ public class DriveCal {
 
   public static final double IMU_PITCH_BIAS_DEG = 1.0;
 
+  /** Expected delay from the Pigeon measuring to the RIO reading the sample */
+  public static final double GYRO_CAN_LATENCY_SEC = 0.002;
+
+  /**
+   * Expected age of the drive encoder positions when read, about half the Spark Max position status
+   * frame period
+   */
+  public static final double DRIVE_ENCODER_LATENCY_SEC = 0.01;
+
   public static final double LEFT_ANGLE_CARDINAL_DIRECTION = 77,
       RIGHT_ANGLE_CARDINAL_DIRECTION = 77;
+
+  /**
+   * Traction control: a module is slipping when its velocity is off from what the rest of the
+   * chassis implies by more than the minimum error and more than this fraction of the expected
+   * speed.
+   */
+  public static final double SLIP_MIN_SPEED_ERROR_METERS_PER_SEC = 0.3,
+      SLIP_SPEED_ERROR_FRACTION = 0.25;
+
+  /** Acceleration allowed on a module while it is slipping */
+  public static final double SLIP_MAX_ACCELERATION_METERS_PER_SEC_SQ = 2.0;
+
+  /** Limits for the swerve setpoint generator */
+  public static final double MAX_MODULE_ACCELERATION_METERS_PER_SEC_SQ = 8.0,
+      MAX_MODULE_STEER_RATE_RAD_PER_SEC = 4 * Math.PI;
 }
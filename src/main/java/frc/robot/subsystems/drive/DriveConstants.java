@@ -20,12 +20,25 @@ public class DriveConstants {
   /** Distance between front and back wheels on robot */
   public static final double WHEEL_BASE_METERS = Units.inchesToMeters(14.5);
 
+  /** Module locations from the robot center: front left, front right, back left, back right */
+  public static final Translation2d[] MODULE_LOCATIONS = {
+    new Translation2d(WHEEL_BASE_METERS / 2, TRACK_WIDTH_METERS / 2),
+    new Translation2d(WHEEL_BASE_METERS / 2, -TRACK_WIDTH_METERS / 2),
+    new Translation2d(-WHEEL_BASE_METERS / 2, TRACK_WIDTH_METERS / 2),
+    new Translation2d(-WHEEL_BASE_METERS / 2, -TRACK_WIDTH_METERS / 2)
+  };
+
   public static final SwerveDriveKinematics DRIVE_KINEMATICS =
-      new SwerveDriveKinematics(
-          new Translation2d(WHEEL_BASE_METERS / 2, TRACK_WIDTH_METERS / 2),
-          new Translation2d(WHEEL_BASE_METERS / 2, -TRACK_WIDTH_METERS / 2),
-          new Translation2d(-WHEEL_BASE_METERS / 2, TRACK_WIDTH_METERS / 2),
-          new Translation2d(-WHEEL_BASE_METERS / 2, -TRACK_WIDTH_METERS / 2));
+      new SwerveDriveKinematics(MODULE_LOCATIONS);
 
   public static final boolean GYRO_REVERSED = false;
+
+  /** Pigeon yaw/pitch/roll and gyro status frames are sent this often */
+  public static final int GYRO_STATUS_FRAME_PERIOD_MS = 5;
+
+  /**
+   * The gyro service samples the Pigeon this often, in its own thread. Twice as often as the status
+   * frames, so a new frame is picked up within half a frame period of arriving.
+   */
+  public static final double GYRO_SAMPLE_PERIOD_SEC = 0.0025;
 }
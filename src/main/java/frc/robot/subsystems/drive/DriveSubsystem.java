@@ -8,6 +8,8 @@ import com.ctre.phoenix.sensors.Pigeon2.AxisDirection;
 import com.fasterxml.jackson.databind.ser.impl.ReadOnlyClassToSerializerMap;
 import com.ctre.phoenix.sensors.WPI_Pigeon2;
 import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
 import edu.wpi.first.math.filter.MedianFilter;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
@@ -16,20 +18,25 @@ import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.geometry.Twist2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
-import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.util.sendable.SendableBuilder;
 import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.PrintCommand;
 import edu.wpi.first.wpilibj2.command.RunCommand;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.Calibrations.TagVision;
 import frc.robot.RobotMap;
+import frc.robot.subsystems.DeviceHealth;
 import frc.robot.subsystems.Lights;
+import frc.robot.subsystems.TagLimelight;
+import frc.robot.utils.CalibrationStore;
 import frc.robot.utils.GeometryUtils;
+import frc.robot.utils.TelemetryPublisher;
 import java.util.Optional;
 import java.util.function.BooleanSupplier;
 
@@ -43,51 +50,85 @@ public class DriveSubsystem extends SubsystemBase {
       new SwerveModule(
           RobotMap.FRONT_LEFT_DRIVE_MOTOR_CAN_ID,
           RobotMap.FRONT_LEFT_STEERING_MOTOR_CAN_ID,
-          DriveCal.FRONT_LEFT_CHASSIS_ANGULAR_OFFSET_RAD);
+          DriveCal.SWERVE_FRONT_LEFT_ANGULAR_OFFSET_RAD);
 
   public final SwerveModule frontRight =
       new SwerveModule(
           RobotMap.FRONT_RIGHT_DRIVE_MOTOR_CAN_ID,
           RobotMap.FRONT_RIGHT_STEERING_MOTOR_CAN_ID,
-          DriveCal.FRONT_RIGHT_CHASSIS_ANGULAR_OFFSET_RAD);
+          DriveCal.SWERVE_FRONT_RIGHT_ANGULAR_OFFSET_RAD);
 
   public final SwerveModule backLeft =
       new SwerveModule(
           RobotMap.BACK_LEFT_DRIVE_MOTOR_CAN_ID,
           RobotMap.BACK_LEFT_STEERING_MOTOR_CAN_ID,
-          DriveCal.BACK_LEFT_CHASSIS_ANGULAR_OFFSET_RAD);
+          DriveCal.SWERVE_BACK_LEFT_ANGULAR_OFFSET_RAD);
 
   public final SwerveModule backRight =
       new SwerveModule(
           RobotMap.BACK_RIGHT_DRIVE_MOTOR_CAN_ID,
           RobotMap.BACK_RIGHT_STEERING_MOTOR_CAN_ID,
-          DriveCal.BACK_RIGHT_CHASSIS_ANGULAR_OFFSET_RAD);
+          DriveCal.SWERVE_BACK_RIGHT_ANGULAR_OFFSET_RAD);
+
+  /** Dashboard gain edits, pushed to all modules at once */
+  private final ModuleGainTuner moduleGainTuner =
+      new ModuleGainTuner(frontLeft, frontRight, backLeft, backRight);
 
   // The gyro sensor
   private final WPI_Pigeon2 gyro = new WPI_Pigeon2(RobotMap.PIGEON_CAN_ID);
+
+  /** Read gyro values through this, it samples faster than the loop and keeps a history */
+  private final GyroService gyroService;
+
   private ChassisSpeeds lastSetChassisSpeeds = new ChassisSpeeds(0.0, 0.0, 0.0);
   public Optional<Pose2d> targetPose = Optional.empty();
   public boolean generatedPath = false;
   private MedianFilter pitchFilter = new MedianFilter(5);
   private double latestFilteredPitchDeg = 0.0;
 
-  // Odometry class for tracking robot pose
-  SwerveDriveOdometry odometry =
-      new SwerveDriveOdometry(
-          DriveConstants.DRIVE_KINEMATICS, Rotation2d.fromDegrees(0.0), getModulePositions());
+  /** Same filter as the pitch, so pitch and pitch rate lag by the same amount */
+  private MedianFilter pitchRateFilter = new MedianFilter(5);
+
+  private double latestFilteredPitchRateDegPerSec = 0.0;
+
+  private final TractionControl traction = new TractionControl();
+
+  private final HeadingController headingController = new HeadingController();
+
+  private final SwerveSetpointGenerator setpointGenerator = new SwerveSetpointGenerator();
+  private double setpointGenerationMicros = 0.0;
+  private double lastPeriodicTimestampSec = Timer.getFPGATimestamp();
+  private double loopDtSec = 0.02;
+
+  // Tracks robot pose from odometry, corrected by AprilTag vision
+  SwerveDrivePoseEstimator poseEstimator =
+      new SwerveDrivePoseEstimator(
+          DriveConstants.DRIVE_KINEMATICS,
+          Rotation2d.fromDegrees(0.0),
+          getModulePositions(),
+          new Pose2d());
 
   /** Multiplier for drive speed, does not affect trajectory following */
   private double throttleMultiplier = 1.0;
 
   private BooleanSupplier isTimedMatch;
 
+  private final TelemetryPublisher telemetry = new TelemetryPublisher("Drive");
+
+  private final TagLimelight tagLimelight;
+
   /** Creates a new DriveSubsystem. */
-  public DriveSubsystem(Lights lightsSubsystem, BooleanSupplier isTimedMatchFunc) {
+  public DriveSubsystem(
+      Lights lightsSubsystem, TagLimelight tagLimelight, BooleanSupplier isTimedMatchFunc) {
     gyro.configFactoryDefault();
     gyro.reset();
     gyro.configMountPose(AxisDirection.PositiveY, AxisDirection.PositiveZ);
+    gyroService = new GyroService(gyro);
     lights = lightsSubsystem;
+    this.tagLimelight = tagLimelight;
     isTimedMatch = isTimedMatchFunc;
+    resetSetpointGenerator();
+    initTelemetry();
   }
 
   public void initialize() {
@@ -97,20 +138,99 @@ public class DriveSubsystem extends SubsystemBase {
     backRight.initialize();
   }
 
+  /**
+   * @param onDriveSparkReinit Called after a driving spark is reconfigured, since that puts its
+   *     current limit back to the default. Runs on the device config thread.
+   */
+  public void registerDeviceHealth(DeviceHealth deviceHealth, Runnable onDriveSparkReinit) {
+    SwerveModule[] modules = {frontLeft, frontRight, backLeft, backRight};
+    String[] names = {"FL", "FR", "BL", "BR"};
+    for (int i = 0; i < modules.length; i++) {
+      SwerveModule module = modules[i];
+      // A reinit restores the ModuleCal gains, so put back any that were tuned since
+      deviceHealth.register(
+          names[i] + " drive",
+          module.drivingSparkMax,
+          () -> {
+            boolean success = module.initDriveSpark() && moduleGainTuner.reapplyGains(module);
+            onDriveSparkReinit.run();
+            return success;
+          });
+      deviceHealth.register(
+          names[i] + " turn",
+          module.turningSparkMax,
+          () -> {
+            return module.initTurnSpark() && moduleGainTuner.reapplyGains(module);
+          });
+    }
+  }
+
   public double getFilteredPitch() {
     return latestFilteredPitchDeg - DriveCal.IMU_PITCH_BIAS_DEG;
   }
 
+  public double getFilteredPitchRateDegPerSec() {
+    return latestFilteredPitchRateDegPerSec;
+  }
+
   @Override
   public void periodic() {
-    latestFilteredPitchDeg = pitchFilter.calculate(gyro.getPitch());
+    gyroService.refresh();
+    latestFilteredPitchDeg = pitchFilter.calculate(gyroService.getPitchDeg());
+    latestFilteredPitchRateDegPerSec =
+        pitchRateFilter.calculate(gyroService.getPitchRateDegPerSec());
 
     // Update the odometry in the periodic block
     frontLeft.periodic();
     frontRight.periodic();
     backLeft.periodic();
     backRight.periodic();
-    odometry.update(Rotation2d.fromDegrees(gyro.getYaw()), getModulePositions());
+    moduleGainTuner.periodic();
+
+    double nowSec = Timer.getFPGATimestamp();
+    loopDtSec = nowSec - lastPeriodicTimestampSec;
+    lastPeriodicTimestampSec = nowSec;
+    traction.update(getModuleStates(), getModulePositions(), getYawRateRadPerSec(), loopDtSec);
+    // Use the yaw from when the encoders were sampled, so fast spins don't skew the translation
+    double encoderTimestampSec = nowSec - DriveCal.DRIVE_ENCODER_LATENCY_SEC;
+    poseEstimator.updateWithTime(
+        encoderTimestampSec,
+        Rotation2d.fromDegrees(gyroService.getYawDegAt(encoderTimestampSec)),
+        traction.getCorrectedPositions());
+
+    addVisionMeasurements();
+
+    telemetry.update();
+  }
+
+  /** Solves every vision frame that arrived since the last loop and hands it to the estimator */
+  private void addVisionMeasurements() {
+    while (tagLimelight.solveNextFrame(gyroService)) {
+      if (!tagLimelight.hasSolvedPose()) {
+        continue;
+      }
+      double xyStdDevMeters =
+          TagVision.SINGLE_TAG_XY_STD_DEV_METERS / Math.sqrt(tagLimelight.getSolvedNumTags());
+      poseEstimator.addVisionMeasurement(
+          tagLimelight.getSolvedPose(),
+          tagLimelight.getSolvedTimestampSec(),
+          VecBuilder.fill(xyStdDevMeters, xyStdDevMeters, TagVision.HEADING_STD_DEV_RAD));
+    }
+  }
+
+  public SwerveModuleState[] getModuleStates() {
+    return new SwerveModuleState[] {
+      frontLeft.getState(), frontRight.getState(), backLeft.getState(), backRight.getState()
+    };
+  }
+
+  public SwerveModuleState[] getDesiredModuleStates() {
+    return new SwerveModuleState[] {
+      frontLeft.getDesiredState(),
+      frontRight.getDesiredState(),
+      backLeft.getDesiredState(),
+      backRight.getDesiredState()
+    };
   }
 
   public SwerveModulePosition[] getModulePositions() {
@@ -146,7 +266,7 @@ public class DriveSubsystem extends SubsystemBase {
    * @return The pose.
    */
   public Pose2d getPose() {
-    return odometry.getPoseMeters();
+    return poseEstimator.getEstimatedPosition();
   }
 
   /**
@@ -156,17 +276,22 @@ public class DriveSubsystem extends SubsystemBase {
    */
   public void resetOdometry(Pose2d pose) {
     // Just update the translation, not the yaw
-    Pose2d resetPose = new Pose2d(pose.getTranslation(), Rotation2d.fromDegrees(gyro.getYaw()));
-    odometry.resetPosition(Rotation2d.fromDegrees(gyro.getYaw()), getModulePositions(), resetPose);
+    Pose2d resetPose =
+        new Pose2d(pose.getTranslation(), Rotation2d.fromDegrees(gyroService.getYawDeg()));
+    poseEstimator.resetPosition(
+        Rotation2d.fromDegrees(gyroService.getYawDeg()),
+        traction.getCorrectedPositions(),
+        resetPose);
   }
 
   public void resetYawToAngle(double yawDeg) {
-    double curYawDeg = gyro.getYaw();
+    double curYawDeg = gyroService.getYawDeg();
     double offsetToTargetDeg = targetHeadingDegrees - curYawDeg;
-    gyro.setYaw(yawDeg);
+    gyroService.setYaw(yawDeg);
     Pose2d curPose = getPose();
     Pose2d resetPose = new Pose2d(curPose.getTranslation(), Rotation2d.fromDegrees(yawDeg));
-    odometry.resetPosition(Rotation2d.fromDegrees(yawDeg), getModulePositions(), resetPose);
+    poseEstimator.resetPosition(
+        Rotation2d.fromDegrees(yawDeg), traction.getCorrectedPositions(), resetPose);
     targetHeadingDegrees = yawDeg + offsetToTargetDeg;
   }
 
@@ -206,6 +331,12 @@ public class DriveSubsystem extends SubsystemBase {
     frontRight.setDesiredState(new SwerveModuleState(0, frontRightCurrRot));
     backLeft.setDesiredState(new SwerveModuleState(0, backLeftCurrRot));
     backRight.setDesiredState(new SwerveModuleState(0, backRightCurrRot));
+    resetSetpointGenerator();
+  }
+
+  /** Restart the setpoint generator from standstill at the modules' current angles */
+  private void resetSetpointGenerator() {
+    setpointGenerator.reset(new ChassisSpeeds(), getModuleStates());
   }
 
   /**
@@ -217,6 +348,15 @@ public class DriveSubsystem extends SubsystemBase {
    * @param fieldRelative Whether the provided x and y speeds are relative to the field.
    */
   public void drive(double xSpeed, double ySpeed, double rot, boolean fieldRelative) {
+    drive(xSpeed, ySpeed, rot, fieldRelative, true);
+  }
+
+  /**
+   * @param throttleRotation False when rot comes from a heading controller rather than the driver,
+   *     so the throttle doesn't slow it down and detune the controller
+   */
+  private void drive(
+      double xSpeed, double ySpeed, double rot, boolean fieldRelative, boolean throttleRotation) {
     if (isTimedMatch.getAsBoolean()
         && DriverStation.isTeleop()
         && DriverStation.getMatchTime() < 0.3) {
@@ -239,26 +379,40 @@ public class DriveSubsystem extends SubsystemBase {
 
     xSpeed *= throttleMultiplier;
     ySpeed *= throttleMultiplier;
-    rot *= throttleMultiplier;
+    if (throttleRotation) {
+      rot *= throttleMultiplier;
+    }
 
     ChassisSpeeds desiredChassisSpeeds =
         fieldRelative
             ? ChassisSpeeds.fromFieldRelativeSpeeds(
-                xSpeed, ySpeed, rot, Rotation2d.fromDegrees(gyro.getYaw()))
+                xSpeed, ySpeed, rot, Rotation2d.fromDegrees(gyroService.getYawDeg()))
             : new ChassisSpeeds(xSpeed, ySpeed, rot);
 
     desiredChassisSpeeds = correctForDynamics(desiredChassisSpeeds);
-    lastSetChassisSpeeds = desiredChassisSpeeds;
 
-    var swerveModuleStates =
-        DriveConstants.DRIVE_KINEMATICS.toSwerveModuleStates(desiredChassisSpeeds);
+    long generateStartNs = System.nanoTime();
+    setpointGenerator.generate(
+        desiredChassisSpeeds.vxMetersPerSecond,
+        desiredChassisSpeeds.vyMetersPerSecond,
+        desiredChassisSpeeds.omegaRadiansPerSecond,
+        loopDtSec);
+    setpointGenerationMicros = (System.nanoTime() - generateStartNs) / 1000.0;
 
-    SwerveDriveKinematics.desaturateWheelSpeeds(
-        swerveModuleStates, DriveConstants.MAX_SPEED_METERS_PER_SECOND);
-    frontLeft.setDesiredState(swerveModuleStates[0]);
-    frontRight.setDesiredState(swerveModuleStates[1]);
-    backLeft.setDesiredState(swerveModuleStates[2]);
-    backRight.setDesiredState(swerveModuleStates[3]);
+    lastSetChassisSpeeds =
+        new ChassisSpeeds(
+            setpointGenerator.getVxMetersPerSecond(),
+            setpointGenerator.getVyMetersPerSecond(),
+            setpointGenerator.getOmegaRadPerSecond());
+
+    SwerveModuleState[] swerveModuleStates = new SwerveModuleState[4];
+    for (int i = 0; i < swerveModuleStates.length; i++) {
+      swerveModuleStates[i] =
+          new SwerveModuleState(
+              setpointGenerator.getSpeedMetersPerSecond(i),
+              Rotation2d.fromRadians(setpointGenerator.getAngleRad(i)));
+    }
+    applyTractionLimitedStates(swerveModuleStates);
   }
 
   /** Sets the wheels into an X formation to prevent movement. */
@@ -269,6 +423,7 @@ public class DriveSubsystem extends SubsystemBase {
     backLeft.setDesiredState(new SwerveModuleState(0, Rotation2d.fromDegrees(-45)));
     backRight.setDesiredState(new SwerveModuleState(0, Rotation2d.fromDegrees(45)));
     targetHeadingDegrees = getHeadingDegrees();
+    resetSetpointGenerator();
   }
 
   /**
@@ -279,6 +434,17 @@ public class DriveSubsystem extends SubsystemBase {
   public void setModuleStates(SwerveModuleState[] desiredStates) {
     SwerveDriveKinematics.desaturateWheelSpeeds(
         desiredStates, DriveConstants.MAX_SPEED_METERS_PER_SECOND);
+    applyTractionLimitedStates(desiredStates);
+    setpointGenerator.reset(
+        DriveConstants.DRIVE_KINEMATICS.toChassisSpeeds(desiredStates), desiredStates);
+  }
+
+  /** Commands the modules, limiting acceleration on any module that is slipping */
+  private void applyTractionLimitedStates(SwerveModuleState[] desiredStates) {
+    for (int i = 0; i < desiredStates.length; i++) {
+      desiredStates[i].speedMetersPerSecond =
+          traction.limitAcceleration(i, desiredStates[i].speedMetersPerSecond, loopDtSec);
+    }
     frontLeft.setDesiredState(desiredStates[0]);
     frontRight.setDesiredState(desiredStates[1]);
     backLeft.setDesiredState(desiredStates[2]);
@@ -291,6 +457,7 @@ public class DriveSubsystem extends SubsystemBase {
     backLeft.resetDrivingEncoders();
     frontRight.resetDrivingEncoders();
     backRight.resetDrivingEncoders();
+    traction.onDrivingEncodersReset();
   }
 
   /**
@@ -299,33 +466,31 @@ public class DriveSubsystem extends SubsystemBase {
    * @return the robot's heading in degrees, from -180 to 180
    */
   public double getHeadingDegrees() {
-    return Rotation2d.fromDegrees(gyro.getYaw()).getDegrees();
+    return Rotation2d.fromDegrees(gyroService.getYawDeg()).getDegrees();
   }
 
   /**
-   * Keeps the heading of the robot when the driver is not turning, by using PID to keep the
-   * distance between the actual heading and the last intended heading to 0.
+   * Keeps the heading of the robot when the driver is not turning, or snaps to a new heading, by
+   * profiling the heading towards the last intended heading.
    *
    * @param x Desired speed of the robot in the x direction (forward), [-1,1].
    * @param y Desired speed of the robot in the y direction (sideways), [-1,1].
    * @param fieldRelative Whether the provided x and y speeds are relative to the field.
    */
   public void keepHeading(double x, double y, boolean fieldRelative) {
-    double currentHeadingDegrees = getHeadingDegrees();
-    double headingDifferenceDegrees = currentHeadingDegrees - targetHeadingDegrees;
-    double offsetHeadingDegrees = MathUtil.inputModulus(headingDifferenceDegrees, -180, 180);
-
-    double pidRotation =
-        DriveCal.ROTATE_TO_TARGET_PID_CONTROLLER.calculate(offsetHeadingDegrees, 0.0);
-    double ffRotation = Math.signum(offsetHeadingDegrees) * DriveCal.ROTATE_TO_TARGET_FF;
+    double desiredRotation =
+        headingController.calculate(
+            Math.toRadians(getHeadingDegrees()),
+            getYawRateRadPerSec(),
+            Math.toRadians(targetHeadingDegrees),
+            loopDtSec);
 
-    double desiredRotation = pidRotation - ffRotation;
-
-    if (Math.abs(desiredRotation) < DriveCal.ROTATION_DEADBAND_THRESHOLD) {
-      desiredRotation = 0;
-    }
+    drive(x, y, desiredRotation, fieldRelative, false);
+  }
 
-    drive(x, y, desiredRotation, fieldRelative);
+  /** Counterclockwise yaw rate from the gyro */
+  public double getYawRateRadPerSec() {
+    return Math.toRadians(gyroService.getYawRateDegPerSec());
   }
 
   public int convertCardinalDirections(int povAngleDeg) {
@@ -360,6 +525,7 @@ public class DriveSubsystem extends SubsystemBase {
       keepHeading(x, y, fieldRelative);
     } else {
       targetHeadingDegrees = getHeadingDegrees();
+      headingController.reset(Math.toRadians(targetHeadingDegrees), getYawRateRadPerSec());
       drive(x, y, rot, fieldRelative);
     }
   }
@@ -369,10 +535,11 @@ public class DriveSubsystem extends SubsystemBase {
     frontRight.setDesiredState(new SwerveModuleState(0, Rotation2d.fromDegrees(0)));
     backLeft.setDesiredState(new SwerveModuleState(0, Rotation2d.fromDegrees(0)));
     backRight.setDesiredState(new SwerveModuleState(0, Rotation2d.fromDegrees(0)));
+    resetSetpointGenerator();
   }
 
-  public WPI_Pigeon2 getGyro() {
-    return gyro;
+  public GyroService getGyroService() {
+    return gyroService;
   }
 
   public Pose2d getPastPose(double latencySec) {
@@ -423,8 +590,22 @@ public class DriveSubsystem extends SubsystemBase {
     throttleMultiplier = throttleValue;
   }
 
+  /**
+   * Current limit for all driving motors, set by the power manager. Blocks on CAN, so call from the
+   * device config thread.
+   *
+   * @return the number of errors
+   */
+  public int setDriveCurrentLimit(int currentLimitAmps) {
+    return frontLeft.setDrivingCurrentLimit(currentLimitAmps)
+        + frontRight.setDrivingCurrentLimit(currentLimitAmps)
+        + backLeft.setDrivingCurrentLimit(currentLimitAmps)
+        + backRight.setDrivingCurrentLimit(currentLimitAmps);
+  }
+
   public void offsetCurrentHeading(double offsetDegrees) {
     targetHeadingDegrees = getHeadingDegrees() + offsetDegrees;
+    headingController.reset(Math.toRadians(getHeadingDegrees()), getYawRateRadPerSec());
   }
 
   public void setZeroTargetHeading() {
@@ -449,24 +630,40 @@ public class DriveSubsystem extends SubsystemBase {
 
   public void zeroFrontLeftAtCurrentPos() {
     DriveCal.SWERVE_FRONT_LEFT_ANGULAR_OFFSET_RAD = frontLeft.getTurningEncoderAbsPositionRad();
+    frontLeft.setChassisAngularOffset(DriveCal.SWERVE_FRONT_LEFT_ANGULAR_OFFSET_RAD);
+    CalibrationStore.putDouble(
+        CalibrationStore.FRONT_LEFT_ANGULAR_OFFSET_RAD,
+        DriveCal.SWERVE_FRONT_LEFT_ANGULAR_OFFSET_RAD);
     System.out.println(
         "New Zero for Front Left Swerve: " + DriveCal.SWERVE_FRONT_LEFT_ANGULAR_OFFSET_RAD);
   }
 
   public void zeroFrontRightAtCurrentPos() {
     DriveCal.SWERVE_FRONT_RIGHT_ANGULAR_OFFSET_RAD = frontRight.getTurningEncoderAbsPositionRad();
+    frontRight.setChassisAngularOffset(DriveCal.SWERVE_FRONT_RIGHT_ANGULAR_OFFSET_RAD);
+    CalibrationStore.putDouble(
+        CalibrationStore.FRONT_RIGHT_ANGULAR_OFFSET_RAD,
+        DriveCal.SWERVE_FRONT_RIGHT_ANGULAR_OFFSET_RAD);
     System.out.println(
         "New Zero for Front Right Swerve: " + DriveCal.SWERVE_FRONT_RIGHT_ANGULAR_OFFSET_RAD);
   }
 
   public void zeroBackLeftAtCurrentPos() {
     DriveCal.SWERVE_BACK_LEFT_ANGULAR_OFFSET_RAD = backLeft.getTurningEncoderAbsPositionRad();
+    backLeft.setChassisAngularOffset(DriveCal.SWERVE_BACK_LEFT_ANGULAR_OFFSET_RAD);
+    CalibrationStore.putDouble(
+        CalibrationStore.BACK_LEFT_ANGULAR_OFFSET_RAD,
+        DriveCal.SWERVE_BACK_LEFT_ANGULAR_OFFSET_RAD);
     System.out.println(
         "New Zero for Back Left Swerve: " + DriveCal.SWERVE_BACK_LEFT_ANGULAR_OFFSET_RAD);
   }
 
   public void zeroBackRightAtCurrentPos() {
     DriveCal.SWERVE_BACK_RIGHT_ANGULAR_OFFSET_RAD = backRight.getTurningEncoderAbsPositionRad();
+    backRight.setChassisAngularOffset(DriveCal.SWERVE_BACK_RIGHT_ANGULAR_OFFSET_RAD);
+    CalibrationStore.putDouble(
+        CalibrationStore.BACK_RIGHT_ANGULAR_OFFSET_RAD,
+        DriveCal.SWERVE_BACK_RIGHT_ANGULAR_OFFSET_RAD);
     System.out.println(
         "New Zero for Back Right Swerve: " + DriveCal.SWERVE_BACK_RIGHT_ANGULAR_OFFSET_RAD);
   }
@@ -477,54 +674,82 @@ public class DriveSubsystem extends SubsystemBase {
     addChild("X Controller", DriveCal.PATH_X_CONTROLLER);
     addChild("Y Controller", DriveCal.PATH_Y_CONTROLLER);
     addChild("Theta Controller", DriveCal.PATH_THETA_CONTROLLER);
-    addChild("Rotate to target controller", DriveCal.ROTATE_TO_TARGET_PID_CONTROLLER);
     addChild("Front Right", frontRight);
     addChild("Front Left", frontLeft);
     addChild("Back Right", backRight);
     addChild("Back Left", backLeft);
-    builder.addDoubleProperty("Filtered pitch deg", this::getFilteredPitch, null);
-    builder.addDoubleProperty(
-        "Throttle multiplier",
-        () -> {
-          return throttleMultiplier;
+    addChild("Module Gains", moduleGainTuner);
+  }
+
+  /** Registers the read-only drive telemetry, which is rate limited instead of polled */
+  private void initTelemetry() {
+    telemetry.addDouble("Gyro Yaw (deg)", gyroService::getYawDeg, TelemetryPublisher.FAST_HZ);
+    telemetry.addDouble(
+        "Gyro Yaw Rate (deg per s)",
+        gyroService::getYawRateDegPerSec,
+        TelemetryPublisher.FAST_HZ);
+    telemetry.addDouble(
+        "Gyro Pitch Rate (deg per s)",
+        gyroService::getPitchRateDegPerSec,
+        TelemetryPublisher.FAST_HZ);
+    telemetry.addDouble(
+        "Target Heading (deg)", () -> targetHeadingDegrees, TelemetryPublisher.FAST_HZ);
+    telemetry.addDouble(
+        "Heading settle time (s)",
+        headingController::getLastSettleTimeSec,
+        TelemetryPublisher.MEDIUM_HZ);
+    telemetry.addDouble("Filtered pitch deg", this::getFilteredPitch, TelemetryPublisher.FAST_HZ);
+    telemetry.addDouble(
+        "Filtered pitch rate (deg per s)",
+        this::getFilteredPitchRateDegPerSec,
+        TelemetryPublisher.FAST_HZ);
+    telemetry.addDouble(
+        "Throttle multiplier", () -> throttleMultiplier, TelemetryPublisher.MEDIUM_HZ);
+    telemetry.addStruct("Odometry Pose", Pose2d.struct, this::getPose, TelemetryPublisher.FAST_HZ);
+    telemetry.addStruct(
+        "Vision Pose", Pose2d.struct, tagLimelight::getSolvedPose, TelemetryPublisher.FAST_HZ);
+    telemetry.addStructArray(
+        "Measured Module States",
+        SwerveModuleState.struct,
+        this::getModuleStates,
+        TelemetryPublisher.FAST_HZ);
+    telemetry.addStructArray(
+        "Desired Module States",
+        SwerveModuleState.struct,
+        this::getDesiredModuleStates,
+        TelemetryPublisher.FAST_HZ);
+    telemetry.addStructArray(
+        "Module Positions",
+        SwerveModulePosition.struct,
+        this::getModulePositions,
+        TelemetryPublisher.FAST_HZ);
+    telemetry.addDouble(
+        "Setpoint generation (us)",
+        () -> setpointGenerationMicros,
+        TelemetryPublisher.MEDIUM_HZ);
+    // Front left, front right, back left, back right
+    telemetry.addDoubleArray(
+        "Slip speed error (m/s)",
+        4,
+        (double[] values) -> {
+          for (int i = 0; i < values.length; i++) {
+            values[i] = traction.getSlipSpeedError(i);
+          }
         },
-        null);
-    builder.addDoubleProperty(
-        "Target Heading (deg)",
-        () -> {
-          return targetHeadingDegrees;
+        TelemetryPublisher.FAST_HZ);
+    telemetry.addDoubleArray(
+        "Abs Encoders (rad)",
+        4,
+        (double[] values) -> {
+          values[0] = frontLeft.getTurningEncoderAbsPositionRad();
+          values[1] = frontRight.getTurningEncoderAbsPositionRad();
+          values[2] = backLeft.getTurningEncoderAbsPositionRad();
+          values[3] = backRight.getTurningEncoderAbsPositionRad();
         },
-        null);
-    builder.addDoubleProperty("Gyro Yaw (deg)", gyro::getYaw, null);
-    builder.addDoubleProperty("Odometry X (m)", () -> getPose().getX(), null);
-    builder.addDoubleProperty("Odometry Y (m)", () -> getPose().getY(), null);
-    builder.addDoubleProperty(
-        "Odometry Yaw (deg)", () -> getPose().getRotation().getDegrees(), null);
-    builder.addDoubleProperty(
-          "Front Left Rel Encoder", () -> {return frontLeft.turningSparkMax.getEncoder().getPosition();}, null);  
-    builder.addDoubleProperty(
-        "Front Left Abs Encoder (rad)", frontLeft::getTurningEncoderAbsPositionRad, null);
-    builder.addDoubleProperty(
-        "Front Right Abs Encoder (rad)", frontRight::getTurningEncoderAbsPositionRad, null);
-    builder.addDoubleProperty(
-        "Back Left Abs Encoder (rad)", backLeft::getTurningEncoderAbsPositionRad, null);
-    builder.addDoubleProperty(
-        "Back Right Abs Encoder (rad)", backRight::getTurningEncoderAbsPositionRad, null);
-    builder.addDoubleProperty(
-        "Front Left Module Pos (rad)", () -> frontLeft.getPosition().angle.getRadians(), null);
-    builder.addDoubleProperty(
-        "Front Right Module Pos (rad)", () -> frontRight.getPosition().angle.getRadians(), null);
-    builder.addDoubleProperty(
-        "Back Left Module Pos (rad)", () -> backLeft.getPosition().angle.getRadians(), null);
-    builder.addDoubleProperty(
-        "Back Right Module Pos (rad)", () -> backRight.getPosition().angle.getRadians(), null);
-    builder.addDoubleProperty(
-        "Front Left Distance (m)", () -> frontLeft.getPosition().distanceMeters, null);
-    builder.addDoubleProperty(
-        "Front Right Distance (m)", () -> frontRight.getPosition().distanceMeters, null);
-    builder.addDoubleProperty(
-        "Back Left Distance (m)", () -> backLeft.getPosition().distanceMeters, null);
-    builder.addDoubleProperty(
-        "Back Right Distance (m)", () -> backRight.getPosition().distanceMeters, null);
+        TelemetryPublisher.MEDIUM_HZ);
+    telemetry.addDouble(
+        "Front Left Rel Encoder",
+        () -> frontLeft.turningSparkMax.getEncoder().getPosition(),
+        TelemetryPublisher.MEDIUM_HZ);
   }
 }
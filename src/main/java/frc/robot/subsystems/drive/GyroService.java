@@ -0,0 +1,166 @@
+package frc.robot.subsystems.drive;
+
+import com.ctre.phoenix.sensors.PigeonIMU_StatusFrame;
+import com.ctre.phoenix.sensors.WPI_Pigeon2;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Samples the Pigeon on its own thread, faster than the robot loop, and keeps a short timestamped
+ * history. The main loop calls {@link #refresh()} once and then reads the cached values, instead of
+ * going through the Pigeon API several times per loop. The history lets odometry ask for the yaw at
+ * the time the drive encoders were actually sampled.
+ *
+ * <p>Phoenix 5 doesn't report device timestamps, so samples are stamped when the RIO reads them,
+ * minus the expected CAN latency. Sampling at the frame rate would alias against the frames,
+ * repeating a frame with a new timestamp and then skipping one, so the Pigeon is sampled twice per
+ * frame and a read that hasn't changed since the last one is dropped as the same frame. A new frame
+ * then arrived on average half a sample period before it was read. Yaw is zeroed in software, so
+ * resetting it never has to wait for the Pigeon to apply a new yaw.
+ */
+public class GyroService {
+  private static final int HISTORY_SIZE = 64;
+
+  /** Number of samples to difference over for pitch rate */
+  private static final int PITCH_RATE_SAMPLES = 4;
+
+  private final WPI_Pigeon2 gyro;
+  private final Notifier sampler;
+
+  // Only touched on the sampler thread
+  private final double[] yprDeg = new double[3];
+  private final double[] rawGyroDegPerSec = new double[3];
+  private final double[] prevYprDeg = new double[3];
+  private final double[] prevRawGyroDegPerSec = new double[3];
+
+  // Ring buffer of samples, guarded by this
+  private final double[] timestampsSec = new double[HISTORY_SIZE];
+  private final double[] rawYawsDeg = new double[HISTORY_SIZE];
+  private final double[] pitchesDeg = new double[HISTORY_SIZE];
+  private final double[] yawRatesDegPerSec = new double[HISTORY_SIZE];
+  private int newestIndex = -1;
+  private int numSamples = 0;
+  private double yawOffsetDeg = 0.0;
+
+  // Snapshot for the current loop
+  private double yawDeg = 0.0;
+  private double pitchDeg = 0.0;
+  private double yawRateDegPerSec = 0.0;
+  private double pitchRateDegPerSec = 0.0;
+
+  public GyroService(WPI_Pigeon2 gyro) {
+    this.gyro = gyro;
+    gyro.setStatusFramePeriod(
+        PigeonIMU_StatusFrame.CondStatus_9_SixDeg_YPR, DriveConstants.GYRO_STATUS_FRAME_PERIOD_MS);
+    gyro.setStatusFramePeriod(
+        PigeonIMU_StatusFrame.BiasedStatus_2_Gyro, DriveConstants.GYRO_STATUS_FRAME_PERIOD_MS);
+
+    sample();
+    refresh();
+    sampler = new Notifier(this::sample);
+    sampler.setName("GyroService");
+    sampler.startPeriodic(DriveConstants.GYRO_SAMPLE_PERIOD_SEC);
+  }
+
+  private void sample() {
+    gyro.getYawPitchRoll(yprDeg);
+    gyro.getRawGyro(rawGyroDegPerSec);
+    if (numSamples > 0 && isSameFrame()) {
+      return;
+    }
+    System.arraycopy(yprDeg, 0, prevYprDeg, 0, 3);
+    System.arraycopy(rawGyroDegPerSec, 0, prevRawGyroDegPerSec, 0, 3);
+
+    double timestampSec =
+        Timer.getFPGATimestamp()
+            - DriveCal.GYRO_CAN_LATENCY_SEC
+            - 0.5 * DriveConstants.GYRO_SAMPLE_PERIOD_SEC;
+    synchronized (this) {
+      newestIndex = (newestIndex + 1) % HISTORY_SIZE;
+      timestampsSec[newestIndex] = timestampSec;
+      rawYawsDeg[newestIndex] = yprDeg[0];
+      pitchesDeg[newestIndex] = yprDeg[1];
+      // Counterclockwise positive, same as yaw
+      yawRatesDegPerSec[newestIndex] = rawGyroDegPerSec[2];
+      numSamples = Math.min(numSamples + 1, HISTORY_SIZE);
+    }
+  }
+
+  /** A read with every value the same as the last one is the frame we already have */
+  private boolean isSameFrame() {
+    for (int i = 0; i < 3; i++) {
+      if (yprDeg[i] != prevYprDeg[i] || rawGyroDegPerSec[i] != prevRawGyroDegPerSec[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Caches the newest sample for this loop, call once at the start of the loop */
+  public synchronized void refresh() {
+    yawDeg = rawYawsDeg[newestIndex] + yawOffsetDeg;
+    pitchDeg = pitchesDeg[newestIndex];
+    yawRateDegPerSec = yawRatesDegPerSec[newestIndex];
+
+    if (numSamples > PITCH_RATE_SAMPLES) {
+      int oldIndex = (newestIndex - PITCH_RATE_SAMPLES + HISTORY_SIZE) % HISTORY_SIZE;
+      double dtSec = timestampsSec[newestIndex] - timestampsSec[oldIndex];
+      if (dtSec > 0.0) {
+        pitchRateDegPerSec = (pitchesDeg[newestIndex] - pitchesDeg[oldIndex]) / dtSec;
+      }
+    }
+  }
+
+  /**
+   * Yaw at the given time, interpolated between samples. Times newer than the newest sample are
+   * extrapolated with the measured yaw rate.
+   */
+  public synchronized double getYawDegAt(double timestampSec) {
+    double newestTimestampSec = timestampsSec[newestIndex];
+    if (timestampSec >= newestTimestampSec) {
+      return rawYawsDeg[newestIndex]
+          + yawOffsetDeg
+          + yawRatesDegPerSec[newestIndex] * (timestampSec - newestTimestampSec);
+    }
+
+    int newerIndex = newestIndex;
+    for (int i = 1; i < numSamples; i++) {
+      int olderIndex = (newestIndex - i + HISTORY_SIZE) % HISTORY_SIZE;
+      double olderTimestampSec = timestampsSec[olderIndex];
+      if (olderTimestampSec <= timestampSec) {
+        double spanSec = timestampsSec[newerIndex] - olderTimestampSec;
+        double t = spanSec > 0.0 ? (timestampSec - olderTimestampSec) / spanSec : 1.0;
+        return rawYawsDeg[olderIndex]
+            + t * (rawYawsDeg[newerIndex] - rawYawsDeg[olderIndex])
+            + yawOffsetDeg;
+      }
+      newerIndex = olderIndex;
+    }
+    // Older than the history, the oldest sample is the best we have
+    return rawYawsDeg[newerIndex] + yawOffsetDeg;
+  }
+
+  /** Makes the current yaw read as the given angle */
+  public synchronized void setYaw(double newYawDeg) {
+    yawOffsetDeg = newYawDeg - rawYawsDeg[newestIndex];
+    yawDeg = newYawDeg;
+  }
+
+  /** Continuous yaw (not wrapped), counterclockwise positive, as of the last refresh */
+  public double getYawDeg() {
+    return yawDeg;
+  }
+
+  public double getPitchDeg() {
+    return pitchDeg;
+  }
+
+  /** Counterclockwise positive */
+  public double getYawRateDegPerSec() {
+    return yawRateDegPerSec;
+  }
+
+  public double getPitchRateDegPerSec() {
+    return pitchRateDegPerSec;
+  }
+}
@@ -0,0 +1,88 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Holds or snaps the robot heading. The heading follows a trapezoid profile to the target, with the
+ * profile velocity fed forward and PD feedback on the profile state. The D term uses the gyro's
+ * measured yaw rate rather than a differentiated heading, so it isn't noisy and doesn't kick when
+ * the target jumps.
+ *
+ * <p>Also measures how long it takes to settle after each new target, for tuning.
+ */
+public class HeadingController {
+  private final TrapezoidProfile profile =
+      new TrapezoidProfile(
+          new TrapezoidProfile.Constraints(
+              DriveCal.HEADING_MAX_VELOCITY_RAD_PER_SEC,
+              DriveCal.HEADING_MAX_ACCELERATION_RAD_PER_SEC_SQ));
+
+  private TrapezoidProfile.State setpoint = new TrapezoidProfile.State();
+  private double lastTargetRad = Double.NaN;
+
+  private double targetChangedTimestampSec = 0.0;
+  private boolean settled = true;
+  private double lastSettleTimeSec = 0.0;
+
+  /** Start the profile from the robot's current motion, e.g. after the driver was turning */
+  public void reset(double headingRad, double yawRateRadPerSec) {
+    setpoint = new TrapezoidProfile.State(headingRad, yawRateRadPerSec);
+  }
+
+  /**
+   * @param headingRad Current heading, counterclockwise positive
+   * @param yawRateRadPerSec Current yaw rate from the gyro, counterclockwise positive
+   * @param targetHeadingRad Heading to hold or snap to
+   * @param dtSec Time since the last call
+   * @return Rotation command, [-1,1] of max angular speed
+   */
+  public double calculate(
+      double headingRad, double yawRateRadPerSec, double targetHeadingRad, double dtSec) {
+    if (Double.isNaN(lastTargetRad)
+        || Math.abs(MathUtil.angleModulus(targetHeadingRad - lastTargetRad)) > 1e-6) {
+      targetChangedTimestampSec = Timer.getFPGATimestamp();
+      settled = false;
+    }
+    lastTargetRad = targetHeadingRad;
+
+    // Keep the profile on the same turn as the robot so it always takes the short way around
+    double goalRad = headingRad + MathUtil.angleModulus(targetHeadingRad - headingRad);
+    setpoint =
+        new TrapezoidProfile.State(
+            headingRad + MathUtil.angleModulus(setpoint.position - headingRad), setpoint.velocity);
+    setpoint = profile.calculate(dtSec, setpoint, new TrapezoidProfile.State(goalRad, 0.0));
+
+    double errorRad = goalRad - headingRad;
+    if (!settled
+        && Math.abs(errorRad) < DriveCal.HEADING_SETTLED_TOLERANCE_RAD
+        && Math.abs(yawRateRadPerSec) < DriveCal.HEADING_SETTLED_RATE_RAD_PER_SEC) {
+      settled = true;
+      lastSettleTimeSec = Timer.getFPGATimestamp() - targetChangedTimestampSec;
+    }
+
+    double rotationRadPerSec =
+        setpoint.velocity
+            + DriveCal.HEADING_P * (setpoint.position - headingRad)
+            + DriveCal.HEADING_D * (setpoint.velocity - yawRateRadPerSec);
+    double rotationNorm =
+        MathUtil.clamp(
+            rotationRadPerSec / DriveConstants.MAX_ANGULAR_SPEED_RAD_PER_SECONDS, -1.0, 1.0);
+
+    if (Math.abs(errorRad) < DriveCal.HEADING_SETTLED_TOLERANCE_RAD
+        && Math.abs(rotationNorm) < DriveCal.ROTATION_DEADBAND_THRESHOLD) {
+      return 0.0;
+    }
+    return rotationNorm;
+  }
+
+  /** Time it took to settle on the most recent target that was reached */
+  public double getLastSettleTimeSec() {
+    return lastSettleTimeSec;
+  }
+
+  public boolean isSettled() {
+    return settled;
+  }
+}
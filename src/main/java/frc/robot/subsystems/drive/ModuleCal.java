@@ -12,6 +12,12 @@ public class ModuleCal {
   /** Values from 2023 */
   public static final double TURNING_P = 0.8, TURNING_I = 0.0, TURNING_D = 0.1, TURNING_FF = 0.0;
 
+  /** Gain edits from the dashboard are pushed once they've stopped changing for this long */
+  public static final double GAIN_EDIT_COALESCE_SEC = 0.25;
+
+  /** Larger gains from the dashboard are assumed to be typos and rejected */
+  public static final double MAX_TUNABLE_GAIN = 10.0;
+
   public static final double DRIVING_MIN_OUTPUT = -1.0, DRIVING_MAX_OUTPUT = 1.0;
   public static final double TURNING_MIN_OUTPUT = -1.0, TURNING_MAX_OUTPUT = 1.0;
 }
@@ -0,0 +1,219 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.util.sendable.Sendable;
+import edu.wpi.first.util.sendable.SendableBuilder;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.utils.DeviceConfigExecutor;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Dashboard tuning of the swerve module PID gains. Edits only change pending values; once the
+ * dashboard has been quiet for a moment the whole set is checked and pushed to all four modules
+ * together on the device config thread, so the main loop never waits on CAN and the modules never
+ * run with different gains. If any module rejects a gain, every module goes back to the last set
+ * that worked.
+ */
+public class ModuleGainTuner implements Sendable {
+  /** One full set of module gains */
+  public static class Gains {
+    public final double drivingP, drivingI, drivingD, drivingFF;
+    public final double turningP, turningI, turningD, turningFF;
+
+    public Gains(
+        double drivingP,
+        double drivingI,
+        double drivingD,
+        double drivingFF,
+        double turningP,
+        double turningI,
+        double turningD,
+        double turningFF) {
+      this.drivingP = drivingP;
+      this.drivingI = drivingI;
+      this.drivingD = drivingD;
+      this.drivingFF = drivingFF;
+      this.turningP = turningP;
+      this.turningI = turningI;
+      this.turningD = turningD;
+      this.turningFF = turningFF;
+    }
+
+    /** Gains must be finite, non-negative, and not absurdly large */
+    public boolean isValid() {
+      double[] all = {
+        drivingP, drivingI, drivingD, drivingFF, turningP, turningI, turningD, turningFF
+      };
+      for (double gain : all) {
+        if (!Double.isFinite(gain) || gain < 0.0 || gain > ModuleCal.MAX_TUNABLE_GAIN) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "driving P %.4f I %.4f D %.4f FF %.4f, turning P %.4f I %.4f D %.4f FF %.4f",
+          drivingP, drivingI, drivingD, drivingFF, turningP, turningI, turningD, turningFF);
+    }
+  }
+
+  public static final Gains DEFAULT_GAINS =
+      new Gains(
+          ModuleCal.DRIVING_P,
+          ModuleCal.DRIVING_I,
+          ModuleCal.DRIVING_D,
+          ModuleCal.DRIVING_FF,
+          ModuleCal.TURNING_P,
+          ModuleCal.TURNING_I,
+          ModuleCal.TURNING_D,
+          ModuleCal.TURNING_FF);
+
+  private final SwerveModule[] modules;
+
+  // Edited from the dashboard, only touched on the main thread
+  private double drivingP, drivingI, drivingD, drivingFF;
+  private double turningP, turningI, turningD, turningFF;
+  private boolean pendingEdit = false;
+  private double lastEditTimestampSec = 0.0;
+
+  /** Last set every module accepted */
+  private volatile Gains appliedGains = DEFAULT_GAINS;
+
+  private volatile boolean pushInFlight = false;
+  private volatile int numRollbacks = 0;
+
+  public ModuleGainTuner(SwerveModule... modules) {
+    this.modules = modules;
+    setPending(DEFAULT_GAINS);
+  }
+
+  private void setPending(Gains gains) {
+    drivingP = gains.drivingP;
+    drivingI = gains.drivingI;
+    drivingD = gains.drivingD;
+    drivingFF = gains.drivingFF;
+    turningP = gains.turningP;
+    turningI = gains.turningI;
+    turningD = gains.turningD;
+    turningFF = gains.turningFF;
+  }
+
+  /** Call every loop, starts a push once the edits have settled */
+  public void periodic() {
+    if (!pendingEdit
+        || pushInFlight
+        || Timer.getFPGATimestamp() - lastEditTimestampSec < ModuleCal.GAIN_EDIT_COALESCE_SEC) {
+      return;
+    }
+    pendingEdit = false;
+
+    Gains requested =
+        new Gains(
+            drivingP, drivingI, drivingD, drivingFF, turningP, turningI, turningD, turningFF);
+    if (!requested.isValid()) {
+      System.out.println("Rejected module gains (" + requested + "), keeping " + appliedGains);
+      setPending(appliedGains);
+      return;
+    }
+
+    pushInFlight = true;
+    Gains previous = appliedGains;
+    DeviceConfigExecutor.submit(
+        () -> {
+          try {
+            push(requested, previous);
+          } finally {
+            pushInFlight = false;
+          }
+        });
+  }
+
+  /**
+   * Puts the last accepted gains back on one module, e.g. after one of its sparks rebooted and was
+   * reconfigured with the defaults. Blocks on CAN, so call from the device config thread, where it
+   * can't interleave with a push.
+   *
+   * @return True on success
+   */
+  public boolean reapplyGains(SwerveModule module) {
+    Gains gains = appliedGains;
+    if (gains == DEFAULT_GAINS) {
+      return true;
+    }
+    return module.applyGains(gains) == 0;
+  }
+
+  /** Runs on the device config thread */
+  private void push(Gains requested, Gains previous) {
+    double startSec = Timer.getFPGATimestamp();
+    int errors = 0;
+    for (SwerveModule module : modules) {
+      errors += module.applyGains(requested);
+    }
+    if (errors == 0) {
+      appliedGains = requested;
+      System.out.println(
+          "Applied module gains ("
+              + requested
+              + ") in "
+              + (Timer.getFPGATimestamp() - startSec)
+              + " s");
+      return;
+    }
+
+    numRollbacks++;
+    int rollbackErrors = 0;
+    for (SwerveModule module : modules) {
+      rollbackErrors += module.applyGains(previous);
+    }
+    System.out.println(
+        "Module gains failed with "
+            + errors
+            + " errors, rolled back to ("
+            + previous
+            + ") with "
+            + rollbackErrors
+            + " errors");
+  }
+
+  private void addGainProperty(
+      SendableBuilder builder, String key, DoubleSupplier getter, DoubleConsumer setter) {
+    builder.addDoubleProperty(
+        key,
+        getter,
+        value -> {
+          if (value != getter.getAsDouble()) {
+            setter.accept(value);
+            pendingEdit = true;
+            lastEditTimestampSec = Timer.getFPGATimestamp();
+          }
+        });
+  }
+
+  @Override
+  public void initSendable(SendableBuilder builder) {
+    addGainProperty(builder, "Driving kP", () -> drivingP, value -> drivingP = value);
+    addGainProperty(builder, "Driving kI", () -> drivingI, value -> drivingI = value);
+    addGainProperty(builder, "Driving kD", () -> drivingD, value -> drivingD = value);
+    addGainProperty(builder, "Driving kFF", () -> drivingFF, value -> drivingFF = value);
+    addGainProperty(builder, "Turning kP", () -> turningP, value -> turningP = value);
+    addGainProperty(builder, "Turning kI", () -> turningI, value -> turningI = value);
+    addGainProperty(builder, "Turning kD", () -> turningD, value -> turningD = value);
+    addGainProperty(builder, "Turning kFF", () -> turningFF, value -> turningFF = value);
+    builder.addBooleanProperty(
+        "Push in flight",
+        () -> {
+          return pushInFlight;
+        },
+        null);
+    builder.addDoubleProperty(
+        "Num rollbacks",
+        () -> {
+          return numRollbacks;
+        },
+        null);
+  }
+}
@@ -16,7 +16,6 @@ import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.util.sendable.Sendable;
 import edu.wpi.first.util.sendable.SendableBuilder;
 import edu.wpi.first.wpilibj.Timer;
-import frc.robot.Calibrations;
 import frc.robot.utils.AbsoluteEncoderChecker;
 import frc.robot.utils.SparkMaxUtils;
 
@@ -32,6 +31,12 @@ public class SwerveModule implements Sendable {
   private final SparkMaxPIDController turningPIDController;
 
   private double chassisAngularOffsetRadians = 0.0;
+
+  /** Drive speed scaling from steering error, and the tracking error with and without it */
+  private double cosineScale = 1.0;
+
+  private double unscaledVelocityErrorMps = 0.0;
+  private double scaledVelocityErrorMps = 0.0;
   private SwerveModuleState desiredState =
       new SwerveModuleState(
           ModuleConstants.DRIVING_ENCODER_VELOCITY_FACTOR_METERS_PER_SECOND, new Rotation2d());
@@ -46,7 +51,7 @@ public class SwerveModule implements Sendable {
     turningSparkMax = new CANSparkMax(turningCanId, MotorType.kBrushless);
     chassisAngularOffsetRadians = chassisAngularOffset;
 
-    SparkMaxUtils.initWithRetry(this::initDriveSpark, Calibrations.SPARK_INIT_RETRY_ATTEMPTS);
+    initDriveSpark();
 
     drivingEncoder = drivingSparkMax.getEncoder();
     drivingPIDController = drivingSparkMax.getPIDController();
@@ -58,101 +63,199 @@ public class SwerveModule implements Sendable {
   }
 
   public void initialize() {
-    SparkMaxUtils.initWithRetry(this::initDriveSpark, Calibrations.SPARK_INIT_RETRY_ATTEMPTS);
-    SparkMaxUtils.initWithRetry(this::initTurnSpark, Calibrations.SPARK_INIT_RETRY_ATTEMPTS);
+    initDriveSpark();
+    initTurnSpark();
   }
 
   /** Does all the initialization for the spark */
   boolean initTurnSpark() {
-    int errors = 0;
-
-    errors += SparkMaxUtils.check(turningSparkMax.restoreFactoryDefaults());
-
-    turningSparkMax.setInverted(ModuleConstants.TURNING_SPARK_MAX_INVERTED);
-
     AbsoluteEncoder turningEncoderTmp = turningSparkMax.getAbsoluteEncoder(Type.kDutyCycle);
     SparkMaxPIDController turningPidTmp = turningSparkMax.getPIDController();
 
-    errors += SparkMaxUtils.check(turningPidTmp.setFeedbackDevice(turningEncoderTmp));
-
-    errors += SparkMaxUtils.check(turningPidTmp.setP(ModuleCal.TURNING_P));
-    errors += SparkMaxUtils.check(turningPidTmp.setI(ModuleCal.TURNING_I));
-    errors += SparkMaxUtils.check(turningPidTmp.setD(ModuleCal.TURNING_D));
-    errors += SparkMaxUtils.check(turningPidTmp.setFF(ModuleCal.TURNING_FF));
-
     /*  Gear ratio 1.0 because the encoder is 1:1 with the module (doesn't involve the actual turning
     / gear ratio)*/
-    SparkMaxUtils.UnitConversions.setRadsFromGearRatio(
-        turningEncoderTmp, ModuleConstants.TURNING_ENCODER_GEAR_RATIO);
-    errors +=
-        SparkMaxUtils.check(
-            turningEncoderTmp.setInverted(ModuleConstants.TURNING_ENCODER_INVERTED));
-    errors += SparkMaxUtils.check(turningPidTmp.setPositionPIDWrappingEnabled(true));
-    errors +=
-        SparkMaxUtils.check(
-            turningPidTmp.setPositionPIDWrappingMinInput(
-                ModuleConstants.TURNING_ENCODER_POSITION_PID_MIN_INPUT_RADIANS));
-    errors +=
-        SparkMaxUtils.check(
-            turningPidTmp.setPositionPIDWrappingMaxInput(
-                ModuleConstants.TURNING_ENCODER_POSITION_PID_MAX_INPUT_RADIANS));
-
-    errors +=
-        SparkMaxUtils.check(
-            turningPidTmp.setOutputRange(
-                ModuleCal.TURNING_MIN_OUTPUT, ModuleCal.TURNING_MAX_OUTPUT));
-    errors +=
-        SparkMaxUtils.check(turningSparkMax.setIdleMode(ModuleConstants.TURNING_MOTOR_IDLE_MODE));
-    errors +=
-        SparkMaxUtils.check(
-            turningSparkMax.setSmartCurrentLimit(ModuleConstants.TURNING_MOTOR_CURRENT_LIMIT_AMPS));
-
-    return errors == 0;
+    double radsPerRotation = (2.0 * Math.PI) / ModuleConstants.TURNING_ENCODER_GEAR_RATIO;
+
+    return new SparkMaxUtils.Config("Turning spark " + turningSparkMax.getDeviceId())
+        .restoreDefaults(turningSparkMax::restoreFactoryDefaults)
+        .step(
+            "inverted",
+            () -> {
+              turningSparkMax.setInverted(ModuleConstants.TURNING_SPARK_MAX_INVERTED);
+              return turningSparkMax.getLastError();
+            },
+            () -> {
+              return turningSparkMax.getInverted() == ModuleConstants.TURNING_SPARK_MAX_INVERTED;
+            })
+        .step("feedback device", () -> turningPidTmp.setFeedbackDevice(turningEncoderTmp))
+        .step(
+            "P",
+            () -> turningPidTmp.setP(ModuleCal.TURNING_P),
+            turningPidTmp::getP,
+            ModuleCal.TURNING_P)
+        .step(
+            "I",
+            () -> turningPidTmp.setI(ModuleCal.TURNING_I),
+            turningPidTmp::getI,
+            ModuleCal.TURNING_I)
+        .step(
+            "D",
+            () -> turningPidTmp.setD(ModuleCal.TURNING_D),
+            turningPidTmp::getD,
+            ModuleCal.TURNING_D)
+        .step(
+            "FF",
+            () -> turningPidTmp.setFF(ModuleCal.TURNING_FF),
+            turningPidTmp::getFF,
+            ModuleCal.TURNING_FF)
+        .step(
+            "position factor",
+            () -> turningEncoderTmp.setPositionConversionFactor(radsPerRotation),
+            turningEncoderTmp::getPositionConversionFactor,
+            radsPerRotation)
+        .step(
+            "velocity factor",
+            () -> turningEncoderTmp.setVelocityConversionFactor(radsPerRotation / 60.0),
+            turningEncoderTmp::getVelocityConversionFactor,
+            radsPerRotation / 60.0)
+        .step(
+            "encoder inverted",
+            () -> turningEncoderTmp.setInverted(ModuleConstants.TURNING_ENCODER_INVERTED),
+            () -> {
+              return turningEncoderTmp.getInverted() == ModuleConstants.TURNING_ENCODER_INVERTED;
+            })
+        .step(
+            "wrapping enabled",
+            () -> turningPidTmp.setPositionPIDWrappingEnabled(true),
+            turningPidTmp::getPositionPIDWrappingEnabled)
+        .step(
+            "wrapping min",
+            () ->
+                turningPidTmp.setPositionPIDWrappingMinInput(
+                    ModuleConstants.TURNING_ENCODER_POSITION_PID_MIN_INPUT_RADIANS),
+            turningPidTmp::getPositionPIDWrappingMinInput,
+            ModuleConstants.TURNING_ENCODER_POSITION_PID_MIN_INPUT_RADIANS)
+        .step(
+            "wrapping max",
+            () ->
+                turningPidTmp.setPositionPIDWrappingMaxInput(
+                    ModuleConstants.TURNING_ENCODER_POSITION_PID_MAX_INPUT_RADIANS),
+            turningPidTmp::getPositionPIDWrappingMaxInput,
+            ModuleConstants.TURNING_ENCODER_POSITION_PID_MAX_INPUT_RADIANS)
+        .step(
+            "output range",
+            () ->
+                turningPidTmp.setOutputRange(
+                    ModuleCal.TURNING_MIN_OUTPUT, ModuleCal.TURNING_MAX_OUTPUT),
+            () -> {
+              return turningPidTmp.getOutputMin() == ModuleCal.TURNING_MIN_OUTPUT
+                  && turningPidTmp.getOutputMax() == ModuleCal.TURNING_MAX_OUTPUT;
+            })
+        .step(
+            "idle mode",
+            () -> turningSparkMax.setIdleMode(ModuleConstants.TURNING_MOTOR_IDLE_MODE),
+            () -> {
+              return turningSparkMax.getIdleMode() == ModuleConstants.TURNING_MOTOR_IDLE_MODE;
+            })
+        .step(
+            "current limit",
+            () ->
+                turningSparkMax.setSmartCurrentLimit(
+                    ModuleConstants.TURNING_MOTOR_CURRENT_LIMIT_AMPS))
+        .apply();
   }
 
   /** Does all the initialization for the spark */
   boolean initDriveSpark() {
-    int errors = 0;
-    errors += SparkMaxUtils.check(drivingSparkMax.restoreFactoryDefaults());
-
-    drivingSparkMax.setInverted(ModuleConstants.DRIVING_SPARK_MAX_INVERTED);
-
     RelativeEncoder drivingEncoderTmp = drivingSparkMax.getEncoder();
     SparkMaxPIDController drivingPidTmp = drivingSparkMax.getPIDController();
-    errors += SparkMaxUtils.check(drivingPidTmp.setFeedbackDevice(drivingEncoderTmp));
-
-    errors += SparkMaxUtils.check(drivingPidTmp.setP(ModuleCal.DRIVING_P));
-    errors += SparkMaxUtils.check(drivingPidTmp.setI(ModuleCal.DRIVING_I));
-    errors += SparkMaxUtils.check(drivingPidTmp.setD(ModuleCal.DRIVING_D));
-    errors += SparkMaxUtils.check(drivingPidTmp.setFF(ModuleCal.DRIVING_FF));
-
-    errors +=
-        SparkMaxUtils.check(
-            drivingPidTmp.setOutputRange(
-                ModuleCal.DRIVING_MIN_OUTPUT, ModuleCal.DRIVING_MAX_OUTPUT));
-
-    errors +=
-        SparkMaxUtils.check(
-            drivingPidTmp.setOutputRange(
-                ModuleCal.DRIVING_MIN_OUTPUT, ModuleCal.DRIVING_MAX_OUTPUT));
-
-    errors +=
-        SparkMaxUtils.check(
-            drivingEncoderTmp.setPositionConversionFactor(
-                ModuleConstants.DRIVING_ENCODER_POSITION_FACTOR_METERS));
-
-    errors +=
-        SparkMaxUtils.check(
-            drivingEncoderTmp.setVelocityConversionFactor(
-                ModuleConstants.DRIVING_ENCODER_VELOCITY_FACTOR_METERS_PER_SECOND));
-
-    errors +=
-        SparkMaxUtils.check(drivingSparkMax.setIdleMode(ModuleConstants.DRIVING_MOTOR_IDLE_MODE));
-    errors +=
-        SparkMaxUtils.check(
-            drivingSparkMax.setSmartCurrentLimit(ModuleConstants.DRIVING_MOTOR_CURRENT_LIMIT_AMPS));
-
-    return errors == 0;
+
+    return new SparkMaxUtils.Config("Driving spark " + drivingSparkMax.getDeviceId())
+        .restoreDefaults(drivingSparkMax::restoreFactoryDefaults)
+        .step(
+            "inverted",
+            () -> {
+              drivingSparkMax.setInverted(ModuleConstants.DRIVING_SPARK_MAX_INVERTED);
+              return drivingSparkMax.getLastError();
+            },
+            () -> {
+              return drivingSparkMax.getInverted() == ModuleConstants.DRIVING_SPARK_MAX_INVERTED;
+            })
+        .step("feedback device", () -> drivingPidTmp.setFeedbackDevice(drivingEncoderTmp))
+        .step(
+            "P",
+            () -> drivingPidTmp.setP(ModuleCal.DRIVING_P),
+            drivingPidTmp::getP,
+            ModuleCal.DRIVING_P)
+        .step(
+            "I",
+            () -> drivingPidTmp.setI(ModuleCal.DRIVING_I),
+            drivingPidTmp::getI,
+            ModuleCal.DRIVING_I)
+        .step(
+            "D",
+            () -> drivingPidTmp.setD(ModuleCal.DRIVING_D),
+            drivingPidTmp::getD,
+            ModuleCal.DRIVING_D)
+        .step(
+            "FF",
+            () -> drivingPidTmp.setFF(ModuleCal.DRIVING_FF),
+            drivingPidTmp::getFF,
+            ModuleCal.DRIVING_FF)
+        .step(
+            "output range",
+            () ->
+                drivingPidTmp.setOutputRange(
+                    ModuleCal.DRIVING_MIN_OUTPUT, ModuleCal.DRIVING_MAX_OUTPUT),
+            () -> {
+              return drivingPidTmp.getOutputMin() == ModuleCal.DRIVING_MIN_OUTPUT
+                  && drivingPidTmp.getOutputMax() == ModuleCal.DRIVING_MAX_OUTPUT;
+            })
+        .step(
+            "position factor",
+            () ->
+                drivingEncoderTmp.setPositionConversionFactor(
+                    ModuleConstants.DRIVING_ENCODER_POSITION_FACTOR_METERS),
+            drivingEncoderTmp::getPositionConversionFactor,
+            ModuleConstants.DRIVING_ENCODER_POSITION_FACTOR_METERS)
+        .step(
+            "velocity factor",
+            () ->
+                drivingEncoderTmp.setVelocityConversionFactor(
+                    ModuleConstants.DRIVING_ENCODER_VELOCITY_FACTOR_METERS_PER_SECOND),
+            drivingEncoderTmp::getVelocityConversionFactor,
+            ModuleConstants.DRIVING_ENCODER_VELOCITY_FACTOR_METERS_PER_SECOND)
+        .step(
+            "idle mode",
+            () -> drivingSparkMax.setIdleMode(ModuleConstants.DRIVING_MOTOR_IDLE_MODE),
+            () -> {
+              return drivingSparkMax.getIdleMode() == ModuleConstants.DRIVING_MOTOR_IDLE_MODE;
+            })
+        .step(
+            "current limit",
+            () ->
+                drivingSparkMax.setSmartCurrentLimit(
+                    ModuleConstants.DRIVING_MOTOR_CURRENT_LIMIT_AMPS))
+        .apply();
+  }
+
+  /**
+   * Sets the PID gains on both sparks. Blocks on CAN, so call from the device config thread (see
+   * {@link ModuleGainTuner}).
+   *
+   * @return the number of errors
+   */
+  int applyGains(ModuleGainTuner.Gains gains) {
+    int errors = 0;
+    errors += SparkMaxUtils.check(drivingPIDController.setP(gains.drivingP));
+    errors += SparkMaxUtils.check(drivingPIDController.setI(gains.drivingI));
+    errors += SparkMaxUtils.check(drivingPIDController.setD(gains.drivingD));
+    errors += SparkMaxUtils.check(drivingPIDController.setFF(gains.drivingFF));
+    errors += SparkMaxUtils.check(turningPIDController.setP(gains.turningP));
+    errors += SparkMaxUtils.check(turningPIDController.setI(gains.turningI));
+    errors += SparkMaxUtils.check(turningPIDController.setD(gains.turningD));
+    errors += SparkMaxUtils.check(turningPIDController.setFF(gains.turningFF));
+    return errors;
   }
 
   /**
@@ -177,6 +280,15 @@ public class SwerveModule implements Sendable {
         new Rotation2d(turningEncoder.getPosition() - chassisAngularOffsetRadians));
   }
 
+  /**
+   * @return The most recently commanded state of the module, relative to the chassis.
+   */
+  public SwerveModuleState getDesiredState() {
+    return new SwerveModuleState(
+        desiredState.speedMetersPerSecond,
+        desiredState.angle.minus(Rotation2d.fromRadians(chassisAngularOffsetRadians)));
+  }
+
   /**
    * @return The current position of the module.
    */
@@ -199,9 +311,19 @@ public class SwerveModule implements Sendable {
         desiredState.angle.plus(Rotation2d.fromRadians(chassisAngularOffsetRadians));
 
     // Optimize the reference state to avoid spinning further than 90 degrees.
+    Rotation2d currentAngle = new Rotation2d(turningEncoder.getPosition());
     SwerveModuleState optimizedDesiredState =
-        SwerveModuleState.optimize(
-            correctedDesiredState, new Rotation2d(turningEncoder.getPosition()));
+        SwerveModuleState.optimize(correctedDesiredState, currentAngle);
+
+    // Scale speed by how well the module is pointed. The wheel drives along its current heading,
+    // so driving at full speed while still turning pushes the chassis off in the wrong direction.
+    double steeringErrorRad = optimizedDesiredState.angle.minus(currentAngle).getRadians();
+    cosineScale = Math.max(0.0, Math.cos(steeringErrorRad));
+    double desiredSpeedMps = Math.abs(optimizedDesiredState.speedMetersPerSecond);
+    // Velocity error of the wheel vs the desired vector: 2v*sin(e/2) at full speed, v*sin(e) scaled
+    unscaledVelocityErrorMps = 2.0 * desiredSpeedMps * Math.abs(Math.sin(steeringErrorRad / 2.0));
+    scaledVelocityErrorMps = desiredSpeedMps * Math.abs(Math.sin(steeringErrorRad));
+    optimizedDesiredState.speedMetersPerSecond *= cosineScale;
 
     // Setting global desiredState to be optimized for the shuffleboard
     this.desiredState = optimizedDesiredState;
@@ -213,12 +335,26 @@ public class SwerveModule implements Sendable {
         optimizedDesiredState.angle.getRadians(), CANSparkMax.ControlType.kPosition);
   }
 
+  /**
+   * Changes the driving motor's current limit at runtime, e.g. to avoid a brownout. Blocks on CAN.
+   *
+   * @return the number of errors
+   */
+  public int setDrivingCurrentLimit(int currentLimitAmps) {
+    return SparkMaxUtils.check(drivingSparkMax.setSmartCurrentLimit(currentLimitAmps));
+  }
+
   /** Zeroes all the SwerveModule encoders. */
   public void resetDrivingEncoders() {
     drivingEncoder.setPosition(0);
     ;
   }
 
+  /** Takes effect from the next desired state, no restart needed */
+  public void setChassisAngularOffset(double chassisAngularOffset) {
+    chassisAngularOffsetRadians = chassisAngularOffset;
+  }
+
   public double getTurningEncoderAbsPositionRad() {
     return turningEncoder.getPosition();
   }
@@ -228,28 +364,22 @@ public class SwerveModule implements Sendable {
   }
 
   public void initSendable(SendableBuilder builder) {
-    builder.addDoubleProperty("Driving kP", drivingPIDController::getP, drivingPIDController::setP);
-    builder.addDoubleProperty("Driving kI", drivingPIDController::getI, drivingPIDController::setI);
-    builder.addDoubleProperty("Driving kD", drivingPIDController::getD, drivingPIDController::setD);
     builder.addDoubleProperty(
-        "Driving kFF", drivingPIDController::getFF, drivingPIDController::setFF);
-    builder.addDoubleProperty("Turning kP", turningPIDController::getP, turningPIDController::setP);
-    builder.addDoubleProperty("Turning kI", turningPIDController::getI, turningPIDController::setI);
-    builder.addDoubleProperty("Turning kD", turningPIDController::getD, turningPIDController::setD);
-    builder.addDoubleProperty(
-        "Turning kFF", turningPIDController::getFF, turningPIDController::setFF);
-    builder.addDoubleProperty("Driving Vel (m/s)", drivingEncoder::getVelocity, null);
-    builder.addDoubleProperty("Steering Pos (rad)", turningEncoder::getPosition, null);
+        "Cosine scale",
+        () -> {
+          return cosineScale;
+        },
+        null);
     builder.addDoubleProperty(
-        "Desired Vel (m/s)",
+        "Vel error unscaled (m/s)",
         () -> {
-          return desiredState.speedMetersPerSecond;
+          return unscaledVelocityErrorMps;
         },
         null);
     builder.addDoubleProperty(
-        "Desired Steer (rad)",
+        "Vel error scaled (m/s)",
         () -> {
-          return desiredState.angle.getRadians();
+          return scaledVelocityErrorMps;
         },
         null);
     builder.addBooleanProperty(
@@ -0,0 +1,213 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+
+/**
+ * Turns a desired chassis speed into module setpoints the modules can actually reach this loop,
+ * respecting the max module acceleration and max steering rate. Inspired by 254's setpoint
+ * generator:
+ * https://github.com/Team254/FRC-2022-Public/blob/main/src/main/java/com/team254/lib/swerve/SwerveSetpointGenerator.java
+ *
+ * <p>Module velocities are linear in the chassis speeds, so moving a fraction s of the way from the
+ * previous chassis speed to the desired one moves every module the same fraction s along a straight
+ * line. We pick the largest s that keeps every module within its acceleration and steering limits,
+ * which keeps the modules kinematically consistent with each other (no scrubbing). Modules that
+ * would need to turn more than 90 degrees flip and reverse instead.
+ *
+ * <p>Works entirely on preallocated primitive arrays, so generate() does not allocate.
+ */
+public class SwerveSetpointGenerator {
+  private static final int NUM_MODULES = 4;
+
+  /** Below this speed a module's direction is meaningless, so it can be steered freely */
+  private static final double STOPPED_SPEED_METERS_PER_SEC = 1e-3;
+
+  private static final int STEERING_SEARCH_ITERATIONS = 10;
+
+  private final double[] moduleXMeters = new double[NUM_MODULES];
+  private final double[] moduleYMeters = new double[NUM_MODULES];
+
+  /** Chassis speeds of the last setpoint */
+  private double prevVxMps = 0.0, prevVyMps = 0.0, prevOmegaRadPerSec = 0.0;
+
+  /** Module angles of the last setpoint, relative to the chassis */
+  private final double[] prevAngleRad = new double[NUM_MODULES];
+
+  /** Module velocity vectors for the previous and desired setpoints, and the change between them */
+  private final double[] prevModuleVx = new double[NUM_MODULES];
+
+  private final double[] prevModuleVy = new double[NUM_MODULES];
+  private final double[] deltaModuleVx = new double[NUM_MODULES];
+  private final double[] deltaModuleVy = new double[NUM_MODULES];
+
+  /** The generated setpoint */
+  private final double[] speedMps = new double[NUM_MODULES];
+
+  private final double[] angleRad = new double[NUM_MODULES];
+
+  public SwerveSetpointGenerator() {
+    for (int i = 0; i < NUM_MODULES; i++) {
+      moduleXMeters[i] = DriveConstants.MODULE_LOCATIONS[i].getX();
+      moduleYMeters[i] = DriveConstants.MODULE_LOCATIONS[i].getY();
+    }
+  }
+
+  /**
+   * Restarts generation from a setpoint commanded some other way, e.g. while the wheels were set in
+   * an X or a trajectory was being followed.
+   */
+  public void reset(ChassisSpeeds chassisSpeeds, SwerveModuleState[] moduleStates) {
+    prevVxMps = chassisSpeeds.vxMetersPerSecond;
+    prevVyMps = chassisSpeeds.vyMetersPerSecond;
+    prevOmegaRadPerSec = chassisSpeeds.omegaRadiansPerSecond;
+    for (int i = 0; i < NUM_MODULES; i++) {
+      prevAngleRad[i] = moduleStates[i].angle.getRadians();
+      speedMps[i] = moduleStates[i].speedMetersPerSecond;
+      angleRad[i] = prevAngleRad[i];
+    }
+  }
+
+  /**
+   * Generates the next setpoint towards the desired robot-relative chassis speeds. Read the result
+   * with {@link #getSpeedMetersPerSecond(int)} and {@link #getAngleRad(int)}.
+   */
+  public void generate(double vxMps, double vyMps, double omegaRadPerSec, double dtSec) {
+    // Desaturate the desired speeds so no module goes over max speed
+    double maxDesiredModuleSpeed = 0.0;
+    for (int i = 0; i < NUM_MODULES; i++) {
+      maxDesiredModuleSpeed =
+          Math.max(
+              maxDesiredModuleSpeed,
+              Math.hypot(
+                  vxMps - omegaRadPerSec * moduleYMeters[i],
+                  vyMps + omegaRadPerSec * moduleXMeters[i]));
+    }
+    if (maxDesiredModuleSpeed > DriveConstants.MAX_SPEED_METERS_PER_SECOND) {
+      double scale = DriveConstants.MAX_SPEED_METERS_PER_SECOND / maxDesiredModuleSpeed;
+      vxMps *= scale;
+      vyMps *= scale;
+      omegaRadPerSec *= scale;
+    }
+
+    double deltaVx = vxMps - prevVxMps;
+    double deltaVy = vyMps - prevVyMps;
+    double deltaOmega = omegaRadPerSec - prevOmegaRadPerSec;
+
+    // Largest fraction of the change allowed by module acceleration
+    double maxDeltaSpeed = DriveCal.MAX_MODULE_ACCELERATION_METERS_PER_SEC_SQ * dtSec;
+    double fraction = 1.0;
+    for (int i = 0; i < NUM_MODULES; i++) {
+      prevModuleVx[i] = prevVxMps - prevOmegaRadPerSec * moduleYMeters[i];
+      prevModuleVy[i] = prevVyMps + prevOmegaRadPerSec * moduleXMeters[i];
+      deltaModuleVx[i] = deltaVx - deltaOmega * moduleYMeters[i];
+      deltaModuleVy[i] = deltaVy + deltaOmega * moduleXMeters[i];
+      double deltaSpeed = Math.hypot(deltaModuleVx[i], deltaModuleVy[i]);
+      if (deltaSpeed * fraction > maxDeltaSpeed) {
+        fraction = maxDeltaSpeed / deltaSpeed;
+      }
+    }
+
+    // Then the largest fraction allowed by steering rate. Bisection, since the module angles are
+    // not linear in the fraction.
+    double maxSteerRad = DriveCal.MAX_MODULE_STEER_RATE_RAD_PER_SEC * dtSec;
+    if (!steeringFeasible(fraction, maxSteerRad)) {
+      double feasible = 0.0;
+      double infeasible = fraction;
+      for (int iter = 0; iter < STEERING_SEARCH_ITERATIONS; iter++) {
+        double mid = 0.5 * (feasible + infeasible);
+        if (steeringFeasible(mid, maxSteerRad)) {
+          feasible = mid;
+        } else {
+          infeasible = mid;
+        }
+      }
+      fraction = feasible;
+    }
+
+    prevVxMps += fraction * deltaVx;
+    prevVyMps += fraction * deltaVy;
+    prevOmegaRadPerSec += fraction * deltaOmega;
+
+    for (int i = 0; i < NUM_MODULES; i++) {
+      double moduleVx = prevModuleVx[i] + fraction * deltaModuleVx[i];
+      double moduleVy = prevModuleVy[i] + fraction * deltaModuleVy[i];
+      double moduleSpeed = Math.hypot(moduleVx, moduleVy);
+
+      double targetAngleRad;
+      if (moduleSpeed > STOPPED_SPEED_METERS_PER_SEC) {
+        targetAngleRad = Math.atan2(moduleVy, moduleVx);
+      } else {
+        // Not moving yet, so turn towards where the desired setpoint will need the module
+        double desiredVx = prevModuleVx[i] + deltaModuleVx[i];
+        double desiredVy = prevModuleVy[i] + deltaModuleVy[i];
+        targetAngleRad =
+            Math.hypot(desiredVx, desiredVy) > STOPPED_SPEED_METERS_PER_SEC
+                ? Math.atan2(desiredVy, desiredVx)
+                : prevAngleRad[i];
+        moduleSpeed = 0.0;
+      }
+
+      // Flip instead of steering more than 90 degrees
+      double steerRad = MathUtil.angleModulus(targetAngleRad - prevAngleRad[i]);
+      if (Math.abs(steerRad) > Math.PI / 2) {
+        moduleSpeed = -moduleSpeed;
+        steerRad = MathUtil.angleModulus(steerRad + Math.PI);
+      }
+      if (moduleSpeed == 0.0) {
+        steerRad = MathUtil.clamp(steerRad, -maxSteerRad, maxSteerRad);
+      }
+
+      angleRad[i] = MathUtil.angleModulus(prevAngleRad[i] + steerRad);
+      speedMps[i] = moduleSpeed;
+      prevAngleRad[i] = angleRad[i];
+    }
+  }
+
+  /** Whether moving the given fraction of the way keeps every module within its steering limit */
+  private boolean steeringFeasible(double fraction, double maxSteerRad) {
+    for (int i = 0; i < NUM_MODULES; i++) {
+      double moduleVx = prevModuleVx[i] + fraction * deltaModuleVx[i];
+      double moduleVy = prevModuleVy[i] + fraction * deltaModuleVy[i];
+      if (Math.hypot(moduleVx, moduleVy) <= STOPPED_SPEED_METERS_PER_SEC) {
+        // A stopped module is commanded towards the desired direction. Holding it at zero speed
+        // while the chassis speeds creep forward would jump its speed once it's lined up.
+        moduleVx = prevModuleVx[i] + deltaModuleVx[i];
+        moduleVy = prevModuleVy[i] + deltaModuleVy[i];
+        if (fraction == 0.0 || Math.hypot(moduleVx, moduleVy) <= STOPPED_SPEED_METERS_PER_SEC) {
+          continue;
+        }
+      }
+      double steerRad = MathUtil.angleModulus(Math.atan2(moduleVy, moduleVx) - prevAngleRad[i]);
+      if (Math.abs(steerRad) > Math.PI / 2) {
+        steerRad = MathUtil.angleModulus(steerRad + Math.PI);
+      }
+      if (Math.abs(steerRad) > maxSteerRad) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public double getSpeedMetersPerSecond(int moduleIndex) {
+    return speedMps[moduleIndex];
+  }
+
+  /** Module angle relative to the chassis */
+  public double getAngleRad(int moduleIndex) {
+    return angleRad[moduleIndex];
+  }
+
+  public double getVxMetersPerSecond() {
+    return prevVxMps;
+  }
+
+  public double getVyMetersPerSecond() {
+    return prevVyMps;
+  }
+
+  public double getOmegaRadPerSecond() {
+    return prevOmegaRadPerSec;
+  }
+}
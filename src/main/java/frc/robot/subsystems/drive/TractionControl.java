@@ -0,0 +1,156 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+
+/**
+ * Detects wheel slip on each swerve module and limits it. A module's measured velocity is compared
+ * against the velocity the chassis should give it: the chassis translation comes from the other
+ * three modules and the rotation comes from the gyro. A module that disagrees by too much is
+ * considered slipping. A slipping module's command is held close to the speed the chassis is really
+ * moving it at, so the wheel gets back into grip, and its measured distance is swapped for the
+ * expected distance in the positions handed to odometry.
+ *
+ * <p>Module order everywhere is front left, front right, back left, back right.
+ */
+public class TractionControl {
+  private static final int NUM_MODULES = 4;
+
+  private final double[] moduleXMeters = new double[NUM_MODULES];
+  private final double[] moduleYMeters = new double[NUM_MODULES];
+
+  private final boolean[] slipping = new boolean[NUM_MODULES];
+  private final double[] slipSpeedErrorMps = new double[NUM_MODULES];
+
+  /** Speed over the ground each module should have, from the other modules and the gyro */
+  private final double[] expectedSpeedMps = new double[NUM_MODULES];
+
+  /** Module velocities measured this loop, x and y components in the robot frame */
+  private final double[] measuredVxMps = new double[NUM_MODULES];
+
+  private final double[] measuredVyMps = new double[NUM_MODULES];
+
+  /** Odometry positions with slipping distance replaced, continuous across encoder resets */
+  private final SwerveModulePosition[] correctedPositions = new SwerveModulePosition[NUM_MODULES];
+
+  private final double[] lastRawDistanceMeters = new double[NUM_MODULES];
+  private boolean initialized = false;
+
+  public TractionControl() {
+    for (int i = 0; i < NUM_MODULES; i++) {
+      moduleXMeters[i] = DriveConstants.MODULE_LOCATIONS[i].getX();
+      moduleYMeters[i] = DriveConstants.MODULE_LOCATIONS[i].getY();
+      correctedPositions[i] = new SwerveModulePosition(0.0, new Rotation2d());
+    }
+  }
+
+  /**
+   * Checks every module for slip and advances the corrected odometry positions. Call once per loop,
+   * before the odometry update.
+   *
+   * @param measuredStates Module states measured this loop, relative to the chassis
+   * @param rawPositions Module positions read from the encoders this loop
+   * @param yawRateRadPerSec Counterclockwise chassis rotation rate from the gyro
+   * @param dtSec Time since the last update
+   */
+  public void update(
+      SwerveModuleState[] measuredStates,
+      SwerveModulePosition[] rawPositions,
+      double yawRateRadPerSec,
+      double dtSec) {
+    if (!initialized) {
+      for (int i = 0; i < NUM_MODULES; i++) {
+        lastRawDistanceMeters[i] = rawPositions[i].distanceMeters;
+        correctedPositions[i].distanceMeters = rawPositions[i].distanceMeters;
+      }
+      initialized = true;
+    }
+
+    for (int i = 0; i < NUM_MODULES; i++) {
+      double speedMps = measuredStates[i].speedMetersPerSecond;
+      measuredVxMps[i] = speedMps * measuredStates[i].angle.getCos();
+      measuredVyMps[i] = speedMps * measuredStates[i].angle.getSin();
+    }
+
+    for (int i = 0; i < NUM_MODULES; i++) {
+      // Chassis translation implied by the other modules, with the rotation taken out
+      double chassisVxMps = 0.0;
+      double chassisVyMps = 0.0;
+      for (int j = 0; j < NUM_MODULES; j++) {
+        if (j != i) {
+          chassisVxMps += measuredVxMps[j] + yawRateRadPerSec * moduleYMeters[j];
+          chassisVyMps += measuredVyMps[j] - yawRateRadPerSec * moduleXMeters[j];
+        }
+      }
+      chassisVxMps /= (NUM_MODULES - 1);
+      chassisVyMps /= (NUM_MODULES - 1);
+
+      double expectedVxMps = chassisVxMps - yawRateRadPerSec * moduleYMeters[i];
+      double expectedVyMps = chassisVyMps + yawRateRadPerSec * moduleXMeters[i];
+      double errorMps =
+          Math.hypot(measuredVxMps[i] - expectedVxMps, measuredVyMps[i] - expectedVyMps);
+
+      slipSpeedErrorMps[i] = errorMps;
+      expectedSpeedMps[i] = Math.hypot(expectedVxMps, expectedVyMps);
+      slipping[i] =
+          errorMps > DriveCal.SLIP_MIN_SPEED_ERROR_METERS_PER_SEC
+              && errorMps
+                  > DriveCal.SLIP_SPEED_ERROR_FRACTION
+                      * Math.max(
+                          expectedSpeedMps[i], DriveCal.SLIP_MIN_SPEED_ERROR_METERS_PER_SEC);
+
+      double rawDistanceMeters = rawPositions[i].distanceMeters;
+      double deltaMeters = rawDistanceMeters - lastRawDistanceMeters[i];
+      if (slipping[i]) {
+        // Distance the wheel should have rolled along its own direction
+        Rotation2d angle = measuredStates[i].angle;
+        deltaMeters = (expectedVxMps * angle.getCos() + expectedVyMps * angle.getSin()) * dtSec;
+      }
+      lastRawDistanceMeters[i] = rawDistanceMeters;
+      correctedPositions[i].distanceMeters += deltaMeters;
+      correctedPositions[i].angle = rawPositions[i].angle;
+    }
+  }
+
+  /** Call when the drive encoders are reset to 0, so the jump isn't counted as distance */
+  public void onDrivingEncodersReset() {
+    for (int i = 0; i < NUM_MODULES; i++) {
+      lastRawDistanceMeters[i] = 0.0;
+    }
+  }
+
+  /**
+   * Limits how far a slipping module may be commanded past the speed it is really moving over the
+   * ground, to one loop of {@link DriveCal#SLIP_MAX_ACCELERATION_METERS_PER_SEC_SQ}. The limit
+   * follows the measurement rather than earlier commands, so a wheel that is spinning out gets
+   * pulled back to the ground speed instead of only being stopped from spinning faster. Slowing
+   * down is never limited. The module's cosine scaling afterwards can only lower the speed.
+   *
+   * @return The speed to command this loop
+   */
+  public double limitAcceleration(int moduleIndex, double desiredSpeedMps, double dtSec) {
+    if (!slipping[moduleIndex]) {
+      return desiredSpeedMps;
+    }
+    double maxSpeedMps =
+        expectedSpeedMps[moduleIndex] + DriveCal.SLIP_MAX_ACCELERATION_METERS_PER_SEC_SQ * dtSec;
+    if (Math.abs(desiredSpeedMps) > maxSpeedMps) {
+      return Math.copySign(maxSpeedMps, desiredSpeedMps);
+    }
+    return desiredSpeedMps;
+  }
+
+  /** Positions for odometry, with slipping modules' distance replaced by the expected distance */
+  public SwerveModulePosition[] getCorrectedPositions() {
+    return correctedPositions;
+  }
+
+  public boolean isSlipping(int moduleIndex) {
+    return slipping[moduleIndex];
+  }
+
+  public double getSlipSpeedError(int moduleIndex) {
+    return slipSpeedErrorMps[moduleIndex];
+  }
+}
@@ -3,19 +3,24 @@ package frc.robot.subsystems.grabber;
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.RelativeEncoder;
 import com.revrobotics.SparkMaxRelativeEncoder;
+import com.revrobotics.SparkPIDController;
 import com.revrobotics.CANSparkMaxLowLevel.MotorType;
+import edu.wpi.first.math.filter.Debouncer;
+import edu.wpi.first.math.filter.Debouncer.DebounceType;
 import edu.wpi.first.util.sendable.SendableBuilder;
+import edu.wpi.first.wpilibj.AsynchronousInterrupt;
 import edu.wpi.first.wpilibj.DigitalInput;
 import edu.wpi.first.wpilibj.Timer;
-import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
-import frc.robot.Calibrations;
 import frc.robot.RobotMap;
-import frc.robot.utils.SparkMaxUtils;
+import frc.robot.subsystems.DeviceHealth;
 import frc.robot.utils.ScoringLocationUtil.ScoreHeight;
 import frc.robot.utils.SparkMaxUtils;
+import frc.robot.utils.TelemetryPublisher;
 
 public class Grabber extends SubsystemBase {
+  private static final String FRONT_SPARK_NAME = "Grabber front spark";
+  private static final String BACK_SPARK_NAME = "Grabber back spark";
 
   private CANSparkMax frontMotor =
       new CANSparkMax(RobotMap.FRONT_INTAKE_ROLLER_MOTOR_CAN_ID, MotorType.kBrushless);
@@ -26,81 +31,313 @@ public class Grabber extends SubsystemBase {
   private RelativeEncoder frontEncoder = frontMotor.getEncoder();
   private RelativeEncoder backEncoder = backMotor.getEncoder();
 
+  private final SparkPIDController frontPIDController = frontMotor.getPIDController();
+  private final SparkPIDController backPIDController = backMotor.getPIDController();
+
+  private volatile double desiredRollerRpm = 0.0;
+
   private final DigitalInput gamePieceSensor =
       new DigitalInput(RobotMap.GRABBER_GAME_PIECE_SENSOR_DIO);
 
+  /** Only lets the sensor report losing the game piece once it has been gone for a while */
+  private final Debouncer gamePieceDebouncer =
+      new Debouncer(GrabberCalibrations.GAME_PIECE_LOST_DEBOUNCE_SEC, DebounceType.kFalling);
+
+  /** Cuts the rollers to hold power as soon as the sensor trips, without waiting for a loop */
+  private final AsynchronousInterrupt gamePieceInterrupt =
+      new AsynchronousInterrupt(gamePieceSensor, this::onGamePieceSensorEdge);
+
+  /**
+   * Held around every roller command, since the interrupt thread commands the rollers too. Without
+   * it the interrupt could check stopOnGamePiece, lose the CPU to a new command from the main
+   * thread, then overwrite that command with hold.
+   */
+  private final Object rollerLock = new Object();
+
+  /** Set while intaking, so the interrupt knows it should stop the rollers. Written under lock */
+  private volatile boolean stopOnGamePiece = false;
+
+  /** Timing of the latest detection, for comparing the interrupt against the periodic loop */
+  private volatile double lastEdgeTimestampSec = 0.0;
+
+  private double lastSampleTimestampSec = 0.0;
+
+  /** Sensor edge to the interrupt seeing it, and sensor edge to the next periodic sample */
+  private volatile double interruptReactionSec = 0.0;
+
+  private double periodicReactionSec = 0.0;
+
   private boolean runningCommand = false;
 
-  private Command rumbleBriefly;
+  /** Roller stall detection state, see checkRollerStall() */
+  private double intakeStartSec = 0.0;
+
+  private int stallSamples = 0;
+
+  /** Set by a stall, until the beam break confirms it or the confirm window runs out */
+  private boolean currentSeesGamePiece = false;
 
-  private boolean sawObject = true;
+  private double stallDetectedSec = 0.0;
+  private int numUnconfirmedStalls = 0;
 
-  public Grabber(Command rumbleBrieflyCmd) {
-    this.rumbleBriefly = rumbleBrieflyCmd;
-    SparkMaxUtils.initWithRetry(this::initSparks, Calibrations.SPARK_INIT_RETRY_ATTEMPTS);
+  /** Latest debounced sensor reading, sampled once per loop in periodic() */
+  private boolean seeGamePiece = false;
+
+  /** True only on the loop the game piece was acquired */
+  private boolean gamePieceAcquired = false;
+
+  /** True only on the loop the game piece was lost */
+  private boolean gamePieceLost = false;
+
+  private final TelemetryPublisher telemetry = new TelemetryPublisher("Grabber");
+
+  public Grabber() {
+    initSparks();
+
+    telemetry.addBoolean(
+        "Stall sees game piece", () -> currentSeesGamePiece, TelemetryPublisher.MEDIUM_HZ);
+    telemetry.addDouble(
+        "Unconfirmed stalls", () -> numUnconfirmedStalls, TelemetryPublisher.SLOW_HZ);
+    telemetry.addDouble(
+        "Desired roller vel (rpm)", () -> desiredRollerRpm, TelemetryPublisher.MEDIUM_HZ);
+    telemetry.addDouble(
+        "Front roller vel (rpm)", frontEncoder::getVelocity, TelemetryPublisher.MEDIUM_HZ);
+    telemetry.addDouble(
+        "Back roller vel (rpm)", backEncoder::getVelocity, TelemetryPublisher.MEDIUM_HZ);
+    telemetry.addDouble(
+        "Interrupt reaction (ms)", () -> interruptReactionSec * 1000.0, TelemetryPublisher.SLOW_HZ);
+    telemetry.addDouble(
+        "Periodic reaction (ms)", () -> periodicReactionSec * 1000.0, TelemetryPublisher.SLOW_HZ);
+
+    // Sensor goes false when the game piece arrives
+    gamePieceInterrupt.setInterruptEdges(false, true);
+    gamePieceInterrupt.enable();
   }
 
   public void initialize() {
-    SparkMaxUtils.initWithRetry(this::initSparks, Calibrations.SPARK_INIT_RETRY_ATTEMPTS);
+    initSparks();
   }
 
-  public void setMotors(double power) {
-    runningCommand = !(Math.abs(power) < 0.01);
-    frontMotor.set(power);
-    backMotor.set(power);
-    System.out.println("spinning grabber motors at " + power);
-    System.out.println("back motor: " + backMotor.get());
+  /** Each roller is reconfigured on its own, so one resetting doesn't disturb the other */
+  public void registerDeviceHealth(DeviceHealth deviceHealth) {
+    deviceHealth.register(
+        "Grabber front",
+        frontMotor,
+        () -> {
+          return initRollerSpark(frontMotor, FRONT_SPARK_NAME);
+        });
+    deviceHealth.register(
+        "Grabber back",
+        backMotor,
+        () -> {
+          return initRollerSpark(backMotor, BACK_SPARK_NAME);
+        });
+  }
+
+  /**
+   * Runs both rollers closed-loop on velocity, so ejection speed doesn't change with battery
+   * voltage. A zero velocity lets the rollers coast down instead of actively braking.
+   */
+  public void setRollerVelocity(double rpm) {
+    runningCommand = !(Math.abs(rpm) < GrabberCalibrations.ROLLER_STOPPED_RPM);
+    synchronized (rollerLock) {
+      stopOnGamePiece = false;
+      desiredRollerRpm = rpm;
+      if (runningCommand) {
+        frontPIDController.setReference(rpm, CANSparkMax.ControlType.kVelocity);
+        backPIDController.setReference(rpm, CANSparkMax.ControlType.kVelocity);
+      } else {
+        frontMotor.set(0.0);
+        backMotor.set(0.0);
+      }
+    }
   }
 
   public void intake() {
-    setMotors(GrabberCalibrations.INTAKING_POWER);
+    stallSamples = 0;
+    currentSeesGamePiece = false;
+    intakeStartSec = Timer.getFPGATimestamp();
+    synchronized (rollerLock) {
+      setRollerVelocity(GrabberCalibrations.INTAKING_RPM);
+      stopOnGamePiece = true;
+    }
     System.out.println("intaking");
   }
 
   public void score(ScoreHeight height) {
-    double scoringPower;
+    double scoringRpm;
     if (height == ScoreHeight.LOW) {
-      scoringPower = GrabberCalibrations.SCORE_LOW_POWER;
+      scoringRpm = GrabberCalibrations.SCORE_LOW_RPM;
     } else if (height == ScoreHeight.MID) {
-      scoringPower = GrabberCalibrations.SCORE_MID_POWER;
+      scoringRpm = GrabberCalibrations.SCORE_MID_RPM;
     } else {
-      scoringPower = GrabberCalibrations.SCORE_HIGH_POWER;
+      scoringRpm = GrabberCalibrations.SCORE_HIGH_RPM;
     }
-    setMotors(scoringPower);
+    currentSeesGamePiece = false;
+    setRollerVelocity(scoringRpm);
   }
 
   public void eject() {
-    setMotors(GrabberCalibrations.EJECTION_POWER);
+    currentSeesGamePiece = false;
+    setRollerVelocity(GrabberCalibrations.EJECTION_RPM);
+  }
+
+  /**
+   * Squeezes the game piece with a small fixed power. Holding on velocity would have the
+   * controller wind up against the stalled rollers and push ever harder on the piece.
+   */
+  public void hold() {
+    runningCommand = true;
+    synchronized (rollerLock) {
+      stopOnGamePiece = false;
+      applyHoldPower();
+    }
   }
 
   public void stopMotors() {
-    setMotors(0.0);
+    setRollerVelocity(0.0);
   }
 
-  public boolean seeGamePiece() {
+  /** Call with rollerLock held */
+  private void applyHoldPower() {
+    desiredRollerRpm = 0.0;
+    frontMotor.set(GrabberCalibrations.HOLD_GAME_OBJECT_POWER);
+    backMotor.set(GrabberCalibrations.HOLD_GAME_OBJECT_POWER);
+  }
+
+  /**
+   * Drops straight to hold power if still intaking, safe to call from the interrupt thread.
+   *
+   * @return False if something else has been commanded since intake() and nothing was done
+   */
+  private boolean holdFromIntake() {
+    synchronized (rollerLock) {
+      if (!stopOnGamePiece) {
+        return false;
+      }
+      stopOnGamePiece = false;
+      applyHoldPower();
+      return true;
+    }
+  }
+
+  /**
+   * Redundant game piece detection: once the rollers have spun up, a game piece shows up as the
+   * rollers slowing down while drawing high current. This usually trips before the beam break
+   * because the rollers load up as soon as they grip the piece.
+   */
+  private void checkRollerStall() {
+    if (!stopOnGamePiece
+        || Timer.getFPGATimestamp() - intakeStartSec < GrabberCalibrations.ROLLER_SPIN_UP_SEC) {
+      stallSamples = 0;
+      return;
+    }
+    double currentAmps = (frontMotor.getOutputCurrent() + backMotor.getOutputCurrent()) / 2.0;
+    double velocityRpm = (frontEncoder.getVelocity() + backEncoder.getVelocity()) / 2.0;
+    boolean stalling =
+        currentAmps > GrabberCalibrations.STALL_CURRENT_AMPS
+            && Math.abs(velocityRpm)
+                < Math.abs(desiredRollerRpm) * GrabberCalibrations.STALL_VELOCITY_FRACTION;
+    stallSamples = stalling ? stallSamples + 1 : 0;
+    if (stallSamples >= GrabberCalibrations.STALL_SAMPLES_FOR_GAME_PIECE && holdFromIntake()) {
+      currentSeesGamePiece = true;
+      stallDetectedSec = Timer.getFPGATimestamp();
+    }
+  }
+
+  /** Runs on the interrupt thread when the sensor sees the game piece arrive */
+  private void onGamePieceSensorEdge(boolean rising, boolean falling) {
+    if (!falling) {
+      return;
+    }
+    double edgeTimestampSec = gamePieceInterrupt.getFallingTimestamp();
+    double reactionSec = Timer.getFPGATimestamp() - edgeTimestampSec;
+    lastEdgeTimestampSec = edgeTimestampSec;
+    if (holdFromIntake()) {
+      interruptReactionSec = reactionSec;
+    }
+  }
+
+  /** Reads the sensor and updates the edge events, should only be called once per loop */
+  private void sampleGamePieceSensor() {
+    double nowSec = Timer.getFPGATimestamp();
     // Sensor is false if there's a game piece
-    boolean seeGamePieceNow = !gamePieceSensor.get();
-    if (!sawObject && seeGamePieceNow) {
-      rumbleBriefly.schedule();
+    boolean sensorSeesGamePiece = gamePieceDebouncer.calculate(!gamePieceSensor.get());
+    if (currentSeesGamePiece) {
+      if (sensorSeesGamePiece) {
+        // The beam break has it now, and will report when it's gone
+        currentSeesGamePiece = false;
+      } else if (nowSec - stallDetectedSec > GrabberCalibrations.STALL_CONFIRM_WINDOW_SEC) {
+        // Jammed or snagged on something that never made it in
+        currentSeesGamePiece = false;
+        numUnconfirmedStalls++;
+        System.out.println("Grabber stall not confirmed by the sensor, no game piece");
+      }
     }
+    boolean seeGamePieceNow = sensorSeesGamePiece || currentSeesGamePiece;
+    gamePieceAcquired = seeGamePieceNow && !seeGamePiece;
+    gamePieceLost = !seeGamePieceNow && seeGamePiece;
+    seeGamePiece = seeGamePieceNow;
 
-    sawObject = seeGamePieceNow;
-    return seeGamePieceNow;
+    // How long periodic() would have taken to see the same edge the interrupt saw. Only counts an
+    // edge that happened since the last sample, so a stall detection or an old edge isn't timed.
+    double edgeTimestampSec = lastEdgeTimestampSec;
+    if (sensorSeesGamePiece && edgeTimestampSec > lastSampleTimestampSec) {
+      periodicReactionSec = nowSec - edgeTimestampSec;
+    }
+    lastSampleTimestampSec = nowSec;
   }
 
-  public boolean initSparks() {
-    int errors = 0;
-    errors += SparkMaxUtils.check(frontMotor.restoreFactoryDefaults());
-    errors += SparkMaxUtils.check(backMotor.restoreFactoryDefaults());
+  /** Whether the beam break or the roller stall sees a game piece, as of the latest sample */
+  public boolean seeGamePiece() {
+    return seeGamePiece;
+  }
+
+  /** Whether the game piece was acquired on the latest sample */
+  public boolean gamePieceAcquired() {
+    return gamePieceAcquired;
+  }
 
-    errors +=
-        SparkMaxUtils.check(
-            frontMotor.setSmartCurrentLimit(GrabberCalibrations.MOTOR_CURRENT_LIMIT));
-    errors +=
-        SparkMaxUtils.check(
-            backMotor.setSmartCurrentLimit(GrabberCalibrations.MOTOR_CURRENT_LIMIT));
+  /** Whether the game piece was lost on the latest sample */
+  public boolean gamePieceLost() {
+    return gamePieceLost;
+  }
+
+  public boolean initSparks() {
+    boolean frontOk = initRollerSpark(frontMotor, FRONT_SPARK_NAME);
+    boolean backOk = initRollerSpark(backMotor, BACK_SPARK_NAME);
+    return frontOk && backOk;
+  }
 
-    return errors == 0;
+  private static boolean initRollerSpark(CANSparkMax motor, String name) {
+    SparkPIDController pidTmp = motor.getPIDController();
+    return new SparkMaxUtils.Config(name + " " + motor.getDeviceId())
+        .restoreDefaults(motor::restoreFactoryDefaults)
+        .step(
+            "current limit",
+            () -> motor.setSmartCurrentLimit(GrabberCalibrations.MOTOR_CURRENT_LIMIT))
+        .step("feedback device", () -> pidTmp.setFeedbackDevice(motor.getEncoder()))
+        .step(
+            "P",
+            () -> pidTmp.setP(GrabberCalibrations.ROLLER_P),
+            pidTmp::getP,
+            GrabberCalibrations.ROLLER_P)
+        .step(
+            "I",
+            () -> pidTmp.setI(GrabberCalibrations.ROLLER_I),
+            pidTmp::getI,
+            GrabberCalibrations.ROLLER_I)
+        .step(
+            "D",
+            () -> pidTmp.setD(GrabberCalibrations.ROLLER_D),
+            pidTmp::getD,
+            GrabberCalibrations.ROLLER_D)
+        .step(
+            "FF",
+            () -> pidTmp.setFF(GrabberCalibrations.ROLLER_FF),
+            pidTmp::getFF,
+            GrabberCalibrations.ROLLER_FF)
+        .apply();
   }
 
   /**
@@ -123,8 +360,11 @@ public class Grabber extends SubsystemBase {
   }
 
   public void periodic() {
-    if (seeGamePiece() && !runningCommand) {
-      setMotors(GrabberCalibrations.HOLD_GAME_OBJECT_POWER);
+    sampleGamePieceSensor();
+    checkRollerStall();
+    if (seeGamePiece && !runningCommand) {
+      hold();
     }
+    telemetry.update();
   }
 }
@@ -3,12 +3,21 @@ package frc.robot.subsystems.grabber;
 public final class GrabberCalibrations {
   public static final double PLACEHOLDER_DOUBLE = 0.0;
 
-  /* motor spin powers for various actions */
-  public static final double INTAKING_POWER = 1.0,
-      EJECTION_POWER = -1.0,
-      SCORE_HIGH_POWER = PLACEHOLDER_DOUBLE,
-      SCORE_MID_POWER = PLACEHOLDER_DOUBLE,
-      SCORE_LOW_POWER = PLACEHOLDER_DOUBLE;
+  /* roller motor velocities (rpm) for various actions */
+  public static final double INTAKING_RPM = 5000.0,
+      EJECTION_RPM = -5000.0,
+      SCORE_HIGH_RPM = PLACEHOLDER_DOUBLE,
+      SCORE_MID_RPM = PLACEHOLDER_DOUBLE,
+      SCORE_LOW_RPM = PLACEHOLDER_DOUBLE;
+
+  /* below this commanded velocity (rpm) the rollers are just turned off */
+  public static final double ROLLER_STOPPED_RPM = 50.0;
+
+  /* roller velocity controller, input rpm, output [-1,1] */
+  public static final double ROLLER_P = 0.0001,
+      ROLLER_I = 0.0,
+      ROLLER_D = 0.0,
+      ROLLER_FF = 1.0 / GrabberConstants.NEO_FREE_SPEED_RPM;
 
   /* wait times spinning motors for various actions*/
   public static final double SCORING_WAIT_TIME = PLACEHOLDER_DOUBLE,
@@ -19,4 +28,18 @@ public final class GrabberCalibrations {
 
   /*Motor power to hold game object */
   public static final double HOLD_GAME_OBJECT_POWER = 0.1;
+
+  /* time the sensor must stop seeing the game object before we consider it gone */
+  public static final double GAME_PIECE_LOST_DEBOUNCE_SEC = 0.1;
+
+  /* stall detection: ignore spin-up inrush, then look for high current at low speed */
+  public static final double ROLLER_SPIN_UP_SEC = 0.25,
+      STALL_CURRENT_AMPS = 20.0,
+      STALL_VELOCITY_FRACTION = 0.5;
+
+  /* consecutive stalled loops before we consider it a game piece */
+  public static final int STALL_SAMPLES_FOR_GAME_PIECE = 2;
+
+  /* time the sensor has to confirm a stall detection before it's dropped as a false alarm */
+  public static final double STALL_CONFIRM_WINDOW_SEC = 0.5;
 }
@@ -1,3 +1,5 @@
 package frc.robot.subsystems.grabber;
 
-public final class GrabberConstants {}
+public final class GrabberConstants {
+  public static final double NEO_FREE_SPEED_RPM = 5676.0;
+}
@@ -0,0 +1,93 @@
+package frc.robot.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+/**
+ * Calibrations measured on the robot (encoder zeros and the like) that should survive a reboot.
+ * They are kept in a properties file on the RIO. The file is read once at boot, before any
+ * subsystem is made, and callers copy the values into their Cal fields. A write goes to a temporary
+ * file, which is forced to disk and then renamed over the real one, so losing power mid-write
+ * leaves either the old file or the complete new one.
+ */
+public class CalibrationStore {
+  private static final Path STORE_PATH = Paths.get("/home/lvuser/calibrations.properties");
+  private static final Path TEMP_PATH = Paths.get("/home/lvuser/calibrations.properties.tmp");
+
+  public static final String ARM_ABSOLUTE_ENCODER_ZERO_POS_DEG = "arm.absoluteEncoderZeroPosDeg",
+      FRONT_LEFT_ANGULAR_OFFSET_RAD = "drive.frontLeftAngularOffsetRad",
+      FRONT_RIGHT_ANGULAR_OFFSET_RAD = "drive.frontRightAngularOffsetRad",
+      BACK_LEFT_ANGULAR_OFFSET_RAD = "drive.backLeftAngularOffsetRad",
+      BACK_RIGHT_ANGULAR_OFFSET_RAD = "drive.backRightAngularOffsetRad";
+
+  private static final Properties properties = new Properties();
+
+  /** Reads the store from disk. A missing or unreadable file leaves the defaults in place. */
+  public static synchronized void load() {
+    properties.clear();
+    if (!Files.exists(STORE_PATH)) {
+      System.out.println("No calibration store at " + STORE_PATH + ", using defaults");
+      return;
+    }
+    try (InputStream in = Files.newInputStream(STORE_PATH)) {
+      properties.load(in);
+      System.out.println("Loaded " + properties.size() + " calibrations from " + STORE_PATH);
+    } catch (IOException e) {
+      properties.clear();
+      System.out.println("Failed to read calibration store, using defaults: " + e.getMessage());
+    }
+  }
+
+  /** @return The stored value, or defaultValue if there isn't one or it doesn't parse */
+  public static synchronized double getDouble(String key, double defaultValue) {
+    String value = properties.getProperty(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      System.out.println("Bad calibration " + key + "=" + value + ", using " + defaultValue);
+      return defaultValue;
+    }
+  }
+
+  /** Stores a value and writes the whole store to disk */
+  public static synchronized void putDouble(String key, double value) {
+    properties.setProperty(key, Double.toString(value));
+    save();
+  }
+
+  private static void save() {
+    try {
+      try (FileChannel channel =
+          FileChannel.open(
+              TEMP_PATH,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING)) {
+        OutputStream out = Channels.newOutputStream(channel);
+        properties.store(out, "Robot calibrations, written by the robot");
+        out.flush();
+        // Otherwise the rename can reach the disk before the data, leaving an empty file
+        channel.force(true);
+      }
+      Files.move(
+          TEMP_PATH,
+          STORE_PATH,
+          StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      System.out.println("Failed to write calibration store: " + e.getMessage());
+    }
+  }
+}
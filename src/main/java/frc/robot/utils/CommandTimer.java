@@ -0,0 +1,47 @@
+package frc.robot.utils;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import java.util.HashMap;
+import java.util.function.Predicate;
+
+/**
+ * Prints how long scheduled commands take from start to finish, e.g. to compare auto cycle times.
+ * Hooks into the scheduler rather than wrapping commands, so the timed commands can still be handed
+ * out (and composed) as usual.
+ */
+public class CommandTimer {
+  private final Predicate<Command> shouldTime;
+  private final HashMap<Command, Double> startTimestampsSec = new HashMap<>();
+
+  /**
+   * @param shouldTime Which commands to time, checked when each command starts
+   */
+  public CommandTimer(Predicate<Command> shouldTime) {
+    this.shouldTime = shouldTime;
+    CommandScheduler scheduler = CommandScheduler.getInstance();
+    scheduler.onCommandInitialize(this::onStart);
+    scheduler.onCommandFinish(command -> onEnd(command, "finished"));
+    scheduler.onCommandInterrupt(command -> onEnd(command, "interrupted"));
+  }
+
+  private void onStart(Command command) {
+    if (shouldTime.test(command)) {
+      startTimestampsSec.put(command, Timer.getFPGATimestamp());
+    }
+  }
+
+  private void onEnd(Command command, String how) {
+    Double startTimestampSec = startTimestampsSec.remove(command);
+    if (startTimestampSec != null) {
+      System.out.println(
+          command.getName()
+              + " "
+              + how
+              + " after "
+              + (Timer.getFPGATimestamp() - startTimestampSec)
+              + " s");
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package frc.robot.utils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * One background thread for slow device configuration calls (each SPARK MAX config call waits for
+ * the device to acknowledge over CAN). Running them here keeps the main loop on time. Jobs run one
+ * at a time in the order they were submitted, so two config changes to the same device can't
+ * interleave.
+ */
+public class DeviceConfigExecutor {
+  private static final ExecutorService executor =
+      Executors.newSingleThreadExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "DeviceConfig");
+            // Don't keep the program alive, and stay out of the main loop's way
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+          });
+
+  public static Future<?> submit(Runnable job) {
+    return executor.submit(
+        () -> {
+          try {
+            job.run();
+          } catch (RuntimeException e) {
+            System.out.println("Device config job failed: " + e);
+          }
+        });
+  }
+}
@@ -0,0 +1,67 @@
+package frc.robot.utils;
+
+import com.revrobotics.CANSparkBase.IdleMode;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.REVLibError;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Switches motors between their enabled idle mode and coast (so the robot can be pushed and the
+ * arm moved by hand) as the robot is enabled and disabled. Each spark's last requested mode is
+ * remembered, so only real changes are sent; the writes run on the device config thread so a mode
+ * switch doesn't hold up the first loop. A write that fails is forgotten, so asking for the same
+ * mode again retries it.
+ */
+public class IdleModeManager {
+  private final ArrayList<CANSparkMax> sparks = new ArrayList<>();
+  private final ArrayList<IdleMode> enabledModes = new ArrayList<>();
+
+  /** Mode last sent to each spark, null if unknown */
+  private AtomicReferenceArray<IdleMode> sentModes = new AtomicReferenceArray<>(0);
+
+  /** Adds a spark, call before any mode changes */
+  public void register(CANSparkMax spark, IdleMode enabledMode) {
+    sparks.add(spark);
+    enabledModes.add(enabledMode);
+    sentModes = new AtomicReferenceArray<>(sparks.size());
+  }
+
+  /** Requests the enabled modes, or coast when disabled. Cheap if nothing changes. */
+  public void setEnabled(boolean enabled) {
+    for (int i = 0; i < sparks.size(); i++) {
+      request(i, enabled ? enabledModes.get(i) : IdleMode.kCoast);
+    }
+  }
+
+  private void request(int index, IdleMode mode) {
+    if (sentModes.get(index) == mode) {
+      return;
+    }
+    sentModes.set(index, mode);
+    CANSparkMax spark = sparks.get(index);
+    DeviceConfigExecutor.submit(
+        () -> {
+          REVLibError error = spark.setIdleMode(mode);
+          if (error != REVLibError.kOk) {
+            // Only forget it if nothing newer has been asked for in the meantime
+            sentModes.compareAndSet(index, mode, null);
+            System.out.println(
+                "Failed to set idle mode "
+                    + mode
+                    + " on spark "
+                    + spark.getDeviceId()
+                    + ": "
+                    + error);
+          }
+        });
+  }
+
+  /** Forgets what a spark was sent, e.g. after it rebooted and lost its settings */
+  public void invalidate(CANSparkMax spark) {
+    int index = sparks.indexOf(spark);
+    if (index >= 0) {
+      sentModes.set(index, null);
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package frc.robot.utils;
 
+import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Transform2d;
 import edu.wpi.first.math.geometry.Translation2d;
@@ -25,12 +26,20 @@ public class ScoringLocationUtil {
   private ScoreCol scoreCol = ScoreCol.LEFT; // default value
   private boolean middleGrid = false; // default value
 
+  /**
+   * AprilTag IDs on the 2023 field for the grids we score on: the open side grid (next to the
+   * loading zone) and the middle grid
+   */
+  private static final int RED_OPEN_GRID_TAG_ID = 3,
+      RED_MIDDLE_GRID_TAG_ID = 2,
+      BLUE_OPEN_GRID_TAG_ID = 6,
+      BLUE_MIDDLE_GRID_TAG_ID = 7;
+
   /** Flip the value of middleGrid */
   public void toggleMiddleGrid() {
     middleGrid = !middleGrid;
   }
 
-  // TODO map scoreCol and scoreHeight to tag IDs.
   public void setScoreCol(ScoreCol chooseCol) {
     this.scoreCol = chooseCol;
   }
@@ -47,6 +56,30 @@ public class ScoringLocationUtil {
     return this.scoreCol;
   }
 
+  /**
+   * Tag on the grid we're scoring on. The height doesn't change the tag, only the arm position,
+   * and the column is an offset from the tag (see {@link #scoringLocationFromTag()}).
+   */
+  public int getScoringTagId(boolean red) {
+    if (red) {
+      return middleGrid ? RED_MIDDLE_GRID_TAG_ID : RED_OPEN_GRID_TAG_ID;
+    }
+    return middleGrid ? BLUE_MIDDLE_GRID_TAG_ID : BLUE_OPEN_GRID_TAG_ID;
+  }
+
+  /**
+   * Field pose to score from, given the field pose of the grid's tag. The robot faces the tag, at
+   * the offset from {@link #scoringLocationFromTag()}.
+   */
+  public Pose2d scoringPoseFromTagPose(Pose2d tagPose) {
+    Transform2d fromTag = scoringLocationFromTag();
+    // Same flip as the drive applies to the limelight transform, then turn to face the tag
+    return tagPose.transformBy(
+        new Transform2d(
+            new Translation2d(-fromTag.getX(), fromTag.getY()),
+            fromTag.getRotation().plus(Rotation2d.fromDegrees(180.0))));
+  }
+
   /** Returns true if the lift is scoring in a high location */
   // TODO I don't know if we need this
   public boolean isScoringHigh() {
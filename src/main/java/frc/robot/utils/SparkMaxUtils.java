@@ -1,9 +1,12 @@
 package frc.robot.utils;
 
-import com.revrobotics.AbsoluteEncoder;
 import com.revrobotics.REVLibError;
-
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Calibrations;
+import java.util.ArrayList;
 import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
 
 public class SparkMaxUtils {
 
@@ -15,21 +18,140 @@ public class SparkMaxUtils {
     return error == REVLibError.kOk ? 0 : 1;
   }
 
-  public static class UnitConversions {
-    public static void setRadsFromGearRatio(AbsoluteEncoder sparkMaxEncoder, double ratio) {
-      double degreesPerRotation = (2.0 * Math.PI) / ratio;
-      double degreesPerRotationPerSecond = degreesPerRotation / 60.0;
-      sparkMaxEncoder.setPositionConversionFactor(degreesPerRotation);
-      sparkMaxEncoder.setVelocityConversionFactor(degreesPerRotationPerSecond);
+  /**
+   * The configuration of one spark, as a list of individual parameter writes. Each write can be
+   * checked by reading the parameter back. {@link #apply()} sends them all, then retries only the
+   * ones that failed, waiting longer each time so a busy bus at boot gets a chance to clear. The
+   * factory reset, if there is one, goes first and is retried on its own, since repeating it later
+   * would wipe the parameters already set.
+   */
+  public static class Config {
+    private static class Step {
+      final String name;
+      final Supplier<REVLibError> write;
+      final BooleanSupplier verify;
+
+      Step(String name, Supplier<REVLibError> write, BooleanSupplier verify) {
+        this.name = name;
+        this.write = write;
+        this.verify = verify;
+      }
+
+      boolean run() {
+        return write.get() == REVLibError.kOk && (verify == null || verify.getAsBoolean());
+      }
     }
-  }
 
-  public static void initWithRetry(BooleanSupplier initFunction, int maxRetryAttempts) {
-    int numAttempts = 0;
-    while (!initFunction.getAsBoolean()) {
-      numAttempts++;
-      if (numAttempts > maxRetryAttempts) {
-        break;
+    private final String deviceName;
+    private Step restoreDefaults = null;
+    private final ArrayList<Step> steps = new ArrayList<>();
+
+    /**
+     * @param deviceName For the printouts
+     */
+    public Config(String deviceName) {
+      this.deviceName = deviceName;
+    }
+
+    /** Factory reset, done before everything else */
+    public Config restoreDefaults(Supplier<REVLibError> write) {
+      restoreDefaults = new Step("restore defaults", write, null);
+      return this;
+    }
+
+    /** A write with no way to read it back */
+    public Config step(String name, Supplier<REVLibError> write) {
+      steps.add(new Step(name, write, null));
+      return this;
+    }
+
+    /** A write that is checked by verify after it succeeds */
+    public Config step(String name, Supplier<REVLibError> write, BooleanSupplier verify) {
+      steps.add(new Step(name, write, verify));
+      return this;
+    }
+
+    /**
+     * A numeric parameter checked by reading it back. Sparks store parameters as floats, so the
+     * comparison allows for float rounding.
+     */
+    public Config step(
+        String name, Supplier<REVLibError> write, DoubleSupplier readBack, double expected) {
+      steps.add(
+          new Step(
+              name,
+              write,
+              () -> {
+                return Math.abs(readBack.getAsDouble() - expected)
+                    <= 1e-6 * Math.max(1.0, Math.abs(expected));
+              }));
+      return this;
+    }
+
+    /**
+     * Sends the configuration. Blocks, including the waits between retries.
+     *
+     * @return False if some parameter still hadn't taken after all the retries
+     */
+    public boolean apply() {
+      double startSec = Timer.getFPGATimestamp();
+      int numRetries = 0;
+      double backoffSec = Calibrations.SPARK_INIT_INITIAL_BACKOFF_SEC;
+
+      if (restoreDefaults != null) {
+        int attempt = 0;
+        while (!restoreDefaults.run()) {
+          if (attempt >= Calibrations.SPARK_INIT_RETRY_ATTEMPTS) {
+            System.out.println("WARNING: " + deviceName + " factory reset failed, giving up");
+            return false;
+          }
+          attempt++;
+          numRetries++;
+          Timer.delay(backoffSec);
+          backoffSec = Math.min(2.0 * backoffSec, Calibrations.SPARK_INIT_MAX_BACKOFF_SEC);
+        }
+      }
+
+      ArrayList<Step> pending = new ArrayList<>(steps);
+      for (int attempt = 0; ; attempt++) {
+        ArrayList<Step> failed = new ArrayList<>();
+        for (Step step : pending) {
+          if (!step.run()) {
+            failed.add(step);
+          }
+        }
+        if (attempt > 0) {
+          numRetries += pending.size();
+        }
+
+        if (failed.isEmpty()) {
+          System.out.println(
+              deviceName
+                  + " configured in "
+                  + (Timer.getFPGATimestamp() - startSec)
+                  + " s with "
+                  + numRetries
+                  + " retries");
+          return true;
+        }
+        if (attempt >= Calibrations.SPARK_INIT_RETRY_ATTEMPTS) {
+          StringBuilder names = new StringBuilder();
+          for (Step step : failed) {
+            names.append(" ").append(step.name);
+          }
+          System.out.println(
+              "WARNING: "
+                  + deviceName
+                  + " config gave up after "
+                  + (Timer.getFPGATimestamp() - startSec)
+                  + " s, failed:"
+                  + names);
+          return false;
+        }
+
+        Timer.delay(backoffSec);
+        backoffSec = Math.min(2.0 * backoffSec, Calibrations.SPARK_INIT_MAX_BACKOFF_SEC);
+        pending = failed;
       }
     }
   }
@@ -0,0 +1,210 @@
+package frc.robot.utils;
+
+import edu.wpi.first.networktables.BooleanPublisher;
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.StructArrayPublisher;
+import edu.wpi.first.networktables.StructPublisher;
+import edu.wpi.first.util.struct.Struct;
+import edu.wpi.first.wpilibj.Timer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Publishes read-only telemetry to NetworkTables at a per-field rate, and only when the value has
+ * changed. Unlike Sendable properties (which are polled every loop), a field's getter is only called
+ * when that field is due, so slow-changing values cost nothing on most loops. Struct and array
+ * fields let related values (e.g. all four module states) go out as a single topic.
+ *
+ * <p>Call {@link #update()} once per loop, typically from the owning subsystem's periodic().
+ */
+public class TelemetryPublisher {
+  /** Rates in Hz for the common classes of telemetry */
+  public static final double FAST_HZ = 50.0, MEDIUM_HZ = 10.0, SLOW_HZ = 1.0;
+
+  private final NetworkTable table;
+  private final ArrayList<Field> fields = new ArrayList<>();
+
+  /**
+   * @param tableName Name of the table under the root "Telemetry" table
+   */
+  public TelemetryPublisher(String tableName) {
+    table = NetworkTableInstance.getDefault().getTable("Telemetry").getSubTable(tableName);
+  }
+
+  public void addDouble(String name, DoubleSupplier getter, double rateHz) {
+    fields.add(new DoubleField(table.getDoubleTopic(name).publish(), getter, rateHz));
+  }
+
+  public void addBoolean(String name, BooleanSupplier getter, double rateHz) {
+    fields.add(new BooleanField(table.getBooleanTopic(name).publish(), getter, rateHz));
+  }
+
+  /**
+   * Adds an array of doubles that is published as one topic.
+   *
+   * @param filler Fills the given array with the current values; the array is reused every time
+   */
+  public void addDoubleArray(String name, int length, ArrayFiller filler, double rateHz) {
+    fields.add(
+        new DoubleArrayField(table.getDoubleArrayTopic(name).publish(), length, filler, rateHz));
+  }
+
+  public <T> void addStruct(String name, Struct<T> struct, Supplier<T> getter, double rateHz) {
+    fields.add(new StructField<T>(table.getStructTopic(name, struct).publish(), getter, rateHz));
+  }
+
+  public <T> void addStructArray(
+      String name, Struct<T> struct, Supplier<T[]> getter, double rateHz) {
+    fields.add(
+        new StructArrayField<T>(table.getStructArrayTopic(name, struct).publish(), getter, rateHz));
+  }
+
+  /** Publishes every field that is due and has changed since it was last sent */
+  public void update() {
+    double nowSec = Timer.getFPGATimestamp();
+    for (Field field : fields) {
+      if (nowSec >= field.nextPublishSec) {
+        field.nextPublishSec = nowSec + field.periodSec;
+        field.publishIfChanged();
+      }
+    }
+  }
+
+  /** Fills a reusable array with the latest values */
+  @FunctionalInterface
+  public interface ArrayFiller {
+    void fill(double[] values);
+  }
+
+  private abstract static class Field {
+    final double periodSec;
+    double nextPublishSec = 0.0;
+
+    Field(double rateHz) {
+      periodSec = 1.0 / rateHz;
+    }
+
+    abstract void publishIfChanged();
+  }
+
+  private static class DoubleField extends Field {
+    private final DoublePublisher publisher;
+    private final DoubleSupplier getter;
+    private boolean published = false;
+    private double lastValue;
+
+    DoubleField(DoublePublisher publisher, DoubleSupplier getter, double rateHz) {
+      super(rateHz);
+      this.publisher = publisher;
+      this.getter = getter;
+    }
+
+    @Override
+    void publishIfChanged() {
+      double value = getter.getAsDouble();
+      if (!published || Double.compare(value, lastValue) != 0) {
+        publisher.set(value);
+        lastValue = value;
+        published = true;
+      }
+    }
+  }
+
+  private static class BooleanField extends Field {
+    private final BooleanPublisher publisher;
+    private final BooleanSupplier getter;
+    private boolean published = false;
+    private boolean lastValue;
+
+    BooleanField(BooleanPublisher publisher, BooleanSupplier getter, double rateHz) {
+      super(rateHz);
+      this.publisher = publisher;
+      this.getter = getter;
+    }
+
+    @Override
+    void publishIfChanged() {
+      boolean value = getter.getAsBoolean();
+      if (!published || value != lastValue) {
+        publisher.set(value);
+        lastValue = value;
+        published = true;
+      }
+    }
+  }
+
+  private static class DoubleArrayField extends Field {
+    private final DoubleArrayPublisher publisher;
+    private final ArrayFiller filler;
+    private final double[] values;
+    private final double[] lastValues;
+    private boolean published = false;
+
+    DoubleArrayField(
+        DoubleArrayPublisher publisher, int length, ArrayFiller filler, double rateHz) {
+      super(rateHz);
+      this.publisher = publisher;
+      this.filler = filler;
+      values = new double[length];
+      lastValues = new double[length];
+    }
+
+    @Override
+    void publishIfChanged() {
+      filler.fill(values);
+      if (!published || !Arrays.equals(values, lastValues)) {
+        publisher.set(values);
+        System.arraycopy(values, 0, lastValues, 0, values.length);
+        published = true;
+      }
+    }
+  }
+
+  private static class StructField<T> extends Field {
+    private final StructPublisher<T> publisher;
+    private final Supplier<T> getter;
+    private T lastValue = null;
+
+    StructField(StructPublisher<T> publisher, Supplier<T> getter, double rateHz) {
+      super(rateHz);
+      this.publisher = publisher;
+      this.getter = getter;
+    }
+
+    @Override
+    void publishIfChanged() {
+      T value = getter.get();
+      if (lastValue == null || !lastValue.equals(value)) {
+        publisher.set(value);
+        lastValue = value;
+      }
+    }
+  }
+
+  private static class StructArrayField<T> extends Field {
+    private final StructArrayPublisher<T> publisher;
+    private final Supplier<T[]> getter;
+    private T[] lastValue = null;
+
+    StructArrayField(StructArrayPublisher<T> publisher, Supplier<T[]> getter, double rateHz) {
+      super(rateHz);
+      this.publisher = publisher;
+      this.getter = getter;
+    }
+
+    @Override
+    void publishIfChanged() {
+      T[] value = getter.get();
+      if (lastValue == null || !Arrays.equals(lastValue, value)) {
+        publisher.set(value);
+        lastValue = value;
+      }
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package frc.robot.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Append-only record of small adjustments made during matches (e.g. arm preset trims), so they
+ * survive a power cycle. Each trim appends one "key=value" line holding the new value, which is
+ * one short synchronous (DSYNC) write with the file kept open. A synchronous write to flash can
+ * take several ms, so it's done on a background thread: the new value is readable as soon as append
+ * returns and is on disk shortly after. At boot the journal is replayed, the last line for each key
+ * wins, and a file that has grown long is compacted to one line per key. A line cut short by losing
+ * power doesn't parse and is skipped.
+ */
+public class TrimJournal {
+  /** Past this many lines the journal is rewritten with just the latest values */
+  private static final int COMPACT_AFTER_LINES = 200;
+
+  /** One thread for every journal, so lines are written in the order they were appended */
+  private static final ExecutorService writer =
+      Executors.newSingleThreadExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "TrimJournal");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+          });
+
+  private final Path path;
+  private final Map<String, Double> latestValues = new LinkedHashMap<>();
+  /** Only written to from the writer thread once the constructor returns */
+  private FileChannel channel = null;
+
+  /**
+   * @param fileName Name of the journal file on the RIO
+   */
+  public TrimJournal(String fileName) {
+    path = Paths.get("/home/lvuser", fileName);
+    int numLines = replay();
+    if (numLines > COMPACT_AFTER_LINES) {
+      compact();
+    }
+    try {
+      channel =
+          FileChannel.open(
+              path,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.APPEND,
+              StandardOpenOption.DSYNC);
+    } catch (IOException e) {
+      System.out.println("Can't open trim journal " + path + ", trims won't be saved: " + e);
+    }
+  }
+
+  /** @return Number of lines read */
+  private int replay() {
+    if (!Files.exists(path)) {
+      return 0;
+    }
+    int numLines = 0;
+    try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        numLines++;
+        int split = line.indexOf('=');
+        if (split <= 0) {
+          continue;
+        }
+        try {
+          latestValues.put(line.substring(0, split), Double.parseDouble(line.substring(split + 1)));
+        } catch (NumberFormatException e) {
+          System.out.println("Skipping bad trim journal line: " + line);
+        }
+      }
+    } catch (IOException e) {
+      System.out.println("Failed to read trim journal " + path + ": " + e);
+    }
+    System.out.println("Replayed " + numLines + " trims from " + path);
+    return numLines;
+  }
+
+  /**
+   * Rewrite with one line per key, via a temp file so a power loss can't lose the trims. The temp
+   * file is forced to disk before the rename, or the rename could land first and leave it empty.
+   */
+  private void compact() {
+    Path tempPath = Paths.get(path + ".tmp");
+    StringBuilder contents = new StringBuilder();
+    for (Map.Entry<String, Double> entry : latestValues.entrySet()) {
+      contents.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+    }
+    try {
+      try (FileChannel out =
+          FileChannel.open(
+              tempPath,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING)) {
+        writeFully(out, contents.toString());
+        out.force(true);
+      }
+      Files.move(
+          tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      System.out.println("Failed to compact trim journal " + path + ": " + e);
+    }
+  }
+
+  private static void writeFully(FileChannel out, String text) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+  }
+
+  /** @return The last value recorded for key, or defaultValue if there isn't one */
+  public double get(String key, double defaultValue) {
+    Double value = latestValues.get(key);
+    return value == null ? defaultValue : value;
+  }
+
+  /** Records a new value for key. The file write happens on the writer thread. */
+  public void append(String key, double value) {
+    latestValues.put(key, value);
+    if (channel == null) {
+      return;
+    }
+    String line = key + "=" + value + "\n";
+    writer.execute(
+        () -> {
+          try {
+            writeFully(channel, line);
+          } catch (IOException e) {
+            System.out.println("Failed to journal trim " + key + ": " + e);
+          }
+        });
+  }
+}
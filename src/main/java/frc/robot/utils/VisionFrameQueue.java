@@ -0,0 +1,94 @@
+package frc.robot.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, lock-free queue of vision frames, for one producer thread (the NetworkTables listener)
+ * and one consumer thread (the main robot loop). Frames are copied into preallocated slots, so
+ * neither side allocates or blocks. When the consumer falls behind and the queue is full, new
+ * frames are dropped and counted.
+ */
+public class VisionFrameQueue {
+  private final int capacity;
+  private final double[][] values;
+  private final int[] lengths;
+  private final double[] timestampsSec;
+
+  /** Index of the next frame to read, only written by the consumer */
+  private final AtomicLong head = new AtomicLong();
+
+  /** Index of the next frame to write, only written by the producer */
+  private final AtomicLong tail = new AtomicLong();
+
+  /** Only written by the producer */
+  private volatile long numDropped = 0;
+
+  // Only touched by the consumer
+  private double polledTimestampSec = 0.0;
+  private int polledLength = 0;
+
+  /**
+   * @param capacity Max frames waiting to be read
+   * @param maxFrameLength Longest frame kept, longer frames are truncated
+   */
+  public VisionFrameQueue(int capacity, int maxFrameLength) {
+    this.capacity = capacity;
+    values = new double[capacity][maxFrameLength];
+    lengths = new int[capacity];
+    timestampsSec = new double[capacity];
+  }
+
+  /**
+   * Producer side. Copies a frame into the queue.
+   *
+   * @return False if the queue was full and the frame was dropped
+   */
+  public boolean offer(double[] frame, double timestampSec) {
+    long t = tail.get();
+    if (t - head.get() >= capacity) {
+      numDropped++;
+      return false;
+    }
+    int slot = (int) (t % capacity);
+    int length = Math.min(frame.length, values[slot].length);
+    System.arraycopy(frame, 0, values[slot], 0, length);
+    lengths[slot] = length;
+    timestampsSec[slot] = timestampSec;
+    // Publishes the slot contents to the consumer
+    tail.set(t + 1);
+    return true;
+  }
+
+  /**
+   * Consumer side. Copies the oldest frame into out, then see {@link #getPolledLength()} and {@link
+   * #getPolledTimestampSec()}.
+   *
+   * @return False if there was no frame waiting
+   */
+  public boolean poll(double[] out) {
+    long h = head.get();
+    if (h == tail.get()) {
+      return false;
+    }
+    int slot = (int) (h % capacity);
+    polledLength = Math.min(lengths[slot], out.length);
+    System.arraycopy(values[slot], 0, out, 0, polledLength);
+    polledTimestampSec = timestampsSec[slot];
+    // Hands the slot back to the producer
+    head.set(h + 1);
+    return true;
+  }
+
+  /** Number of values in the last polled frame */
+  public int getPolledLength() {
+    return polledLength;
+  }
+
+  public double getPolledTimestampSec() {
+    return polledTimestampSec;
+  }
+
+  public long getNumDropped() {
+    return numDropped;
+  }
+}
@@ -0,0 +1,191 @@
+package frc.robot.commands.autos.components;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.math.filter.MedianFilter;
+import frc.robot.Calibrations.AutoBalance;
+import frc.robot.subsystems.drive.DriveConstants;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs the balance logic against a simple seesaw: the charge station pivots about its middle, is
+ * tipped by the robot's weight, and has hinge damping and friction. The robot drives along the
+ * station at the commanded speed, limited by its acceleration.
+ */
+class AutoChargeStationBalanceTest {
+  private static final double LOOP_SEC = 0.02, SIM_STEP_SEC = 0.001;
+  private static final double G = 9.81;
+
+  private static final double ROBOT_MASS_KG = 55.0;
+  private static final double ROBOT_ACCELERATION_METERS_PER_SEC_SQ = 4.0;
+
+  /** Station about its pivot, without the robot */
+  private static final double STATION_MOI_KG_METERS_SQ = 20.0;
+
+  private static final double HINGE_DAMPING_NM_PER_RAD_PER_SEC = 40.0;
+  private static final double HINGE_FRICTION_NM = 60.0;
+  private static final double MAX_TILT_RAD = Math.toRadians(15.0);
+
+  /** No match timer, so the end of auto never forces the stop */
+  private static final double MATCH_TIME_SEC = 15.0;
+
+  private static final double MAX_TIME_TO_BALANCE_SEC = 5.0;
+
+  /** The station shouldn't tip out of level the other way once the robot crosses the pivot */
+  private static final double MAX_OVERSHOOT_DEG = AutoBalance.LEVEL_TOLERANCE_DEG;
+
+  /**
+   * Seesaw and robot state. Tilt is positive with the far end up, which is the robot's pitch when
+   * it faces the far end. Robot position is along the station from the pivot, positive towards the
+   * far end.
+   */
+  private static class Seesaw {
+    double tiltRad;
+    double tiltRateRadPerSec = 0.0;
+    double robotMeters;
+    double robotSpeedMetersPerSec;
+
+    Seesaw(double tiltRad, double robotMeters, double robotSpeedMetersPerSec) {
+      this.tiltRad = tiltRad;
+      this.robotMeters = robotMeters;
+      this.robotSpeedMetersPerSec = robotSpeedMetersPerSec;
+    }
+
+    void step(double commandedSpeedMetersPerSec, double dtSec) {
+      double maxSpeedChange = ROBOT_ACCELERATION_METERS_PER_SEC_SQ * dtSec;
+      robotSpeedMetersPerSec +=
+          Math.max(
+              -maxSpeedChange,
+              Math.min(maxSpeedChange, commandedSpeedMetersPerSec - robotSpeedMetersPerSec));
+      robotMeters += robotSpeedMetersPerSec * dtSec;
+
+      // A robot behind the pivot lifts the far end
+      double gravityTorqueNm = -ROBOT_MASS_KG * G * robotMeters * Math.cos(tiltRad);
+      if (tiltRateRadPerSec == 0.0 && Math.abs(gravityTorqueNm) <= HINGE_FRICTION_NM) {
+        return;
+      }
+      double frictionTorqueNm =
+          tiltRateRadPerSec != 0.0
+              ? -Math.signum(tiltRateRadPerSec) * HINGE_FRICTION_NM
+              : -Math.signum(gravityTorqueNm) * HINGE_FRICTION_NM;
+      double moi = STATION_MOI_KG_METERS_SQ + ROBOT_MASS_KG * robotMeters * robotMeters;
+      double dampingTorqueNm = -HINGE_DAMPING_NM_PER_RAD_PER_SEC * tiltRateRadPerSec;
+      double tiltAccel = (gravityTorqueNm + dampingTorqueNm + frictionTorqueNm) / moi;
+      double newTiltRate = tiltRateRadPerSec + tiltAccel * dtSec;
+      // Friction stops the hinge, it doesn't reverse it
+      if (tiltRateRadPerSec != 0.0 && newTiltRate * tiltRateRadPerSec < 0.0) {
+        newTiltRate = 0.0;
+      }
+      tiltRateRadPerSec = newTiltRate;
+      tiltRad += tiltRateRadPerSec * dtSec;
+      if (Math.abs(tiltRad) >= MAX_TILT_RAD) {
+        tiltRad = Math.copySign(MAX_TILT_RAD, tiltRad);
+        tiltRateRadPerSec = 0.0;
+      }
+    }
+  }
+
+  /** Balance result: seconds to settle (NaN if it never did) and overshoot past level */
+  private static class Result {
+    double balancedSec = Double.NaN;
+    double maxOvershootDeg = 0.0;
+  }
+
+  /** Runs the command's logic at the loop rate, with the drive's pitch filtering */
+  private static Result balance(Seesaw seesaw) {
+    MedianFilter pitchFilter = new MedianFilter(5);
+    MedianFilter pitchRateFilter = new MedianFilter(5);
+    double balancedTimestampSec = Double.NaN;
+    Result result = new Result();
+    boolean crossedPivot = false;
+    double startSign = Math.signum(seesaw.tiltRad);
+
+    for (double nowSec = 0.0; nowSec < MAX_TIME_TO_BALANCE_SEC; nowSec += LOOP_SEC) {
+      double pitchDeg = pitchFilter.calculate(Math.toDegrees(seesaw.tiltRad));
+      double pitchRateDegPerSec =
+          pitchRateFilter.calculate(Math.toDegrees(seesaw.tiltRateRadPerSec));
+
+      if (AutoChargeStationBalance.isBalanced(pitchDeg, pitchRateDegPerSec)) {
+        if (Double.isNaN(balancedTimestampSec)) {
+          balancedTimestampSec = nowSec;
+        }
+      } else {
+        balancedTimestampSec = Double.NaN;
+      }
+      if (AutoChargeStationBalance.hasSettled(balancedTimestampSec, nowSec)) {
+        result.balancedSec = balancedTimestampSec;
+        return result;
+      }
+
+      double commandedSpeedMetersPerSec = 0.0;
+      if (!AutoChargeStationBalance.shouldStop(pitchDeg, pitchRateDegPerSec, MATCH_TIME_SEC)) {
+        commandedSpeedMetersPerSec =
+            AutoChargeStationBalance.getNormVelocity(pitchDeg, pitchRateDegPerSec)
+                * DriveConstants.MAX_SPEED_METERS_PER_SECOND;
+      }
+      for (double t = 0.0; t < LOOP_SEC - 1e-9; t += SIM_STEP_SEC) {
+        seesaw.step(commandedSpeedMetersPerSec, SIM_STEP_SEC);
+        crossedPivot |= seesaw.robotMeters * startSign > 0.0;
+        if (crossedPivot) {
+          result.maxOvershootDeg =
+              Math.max(result.maxOvershootDeg, -startSign * Math.toDegrees(seesaw.tiltRad));
+        }
+      }
+    }
+    return result;
+  }
+
+  @Test
+  void balancesFromTheRamp() {
+    // Just driven on, far end up against the stop
+    Result result = balance(new Seesaw(MAX_TILT_RAD, -0.6, 0.5));
+    System.out.println(
+        "Balanced from the ramp in "
+            + result.balancedSec
+            + " s, overshoot "
+            + result.maxOvershootDeg
+            + " deg");
+    assertFalse(Double.isNaN(result.balancedSec), "never balanced");
+    assertTrue(result.maxOvershootDeg < MAX_OVERSHOOT_DEG, "overshot level");
+  }
+
+  @Test
+  void balancesAfterOvershootingThePivot() {
+    // Driven too far, near end up against the stop
+    Result result = balance(new Seesaw(-MAX_TILT_RAD, 0.4, 0.0));
+    System.out.println(
+        "Balanced from past the pivot in "
+            + result.balancedSec
+            + " s, overshoot "
+            + result.maxOvershootDeg
+            + " deg");
+    assertFalse(Double.isNaN(result.balancedSec), "never balanced");
+    assertTrue(result.maxOvershootDeg < MAX_OVERSHOOT_DEG, "overshot level");
+  }
+
+  @Test
+  void stopsOnceLevelIsPredictedWithinTheLeadTime() {
+    double rateDegPerSec = -10.0;
+    double levelInLeadTimeDeg = -rateDegPerSec * AutoBalance.STOP_LEAD_TIME_SEC;
+    // Still far from level, keep driving uphill
+    assertTrue(
+        AutoChargeStationBalance.getNormVelocity(2.0 * levelInLeadTimeDeg, rateDegPerSec) > 0.0);
+    // Will be level within the lead time, back off
+    assertTrue(
+        AutoChargeStationBalance.getNormVelocity(0.5 * levelInLeadTimeDeg, rateDegPerSec) < 0.0);
+    assertEquals(
+        0.0,
+        AutoChargeStationBalance.getPredictedPitchDeg(levelInLeadTimeDeg, rateDegPerSec),
+        1e-9);
+  }
+
+  @Test
+  void settlesOnlyAfterStayingBalanced() {
+    assertFalse(AutoChargeStationBalance.hasSettled(Double.NaN, 10.0));
+    assertFalse(AutoChargeStationBalance.hasSettled(10.0, 10.0));
+    assertTrue(
+        AutoChargeStationBalance.hasSettled(10.0, 10.0 + 2.0 * AutoBalance.BALANCED_SETTLE_SEC));
+  }
+}
@@ -0,0 +1,136 @@
+package frc.robot.subsystems.drive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.math.MathUtil;
+import org.junit.jupiter.api.Test;
+
+class SwerveSetpointGeneratorTest {
+  private static final double DT_SEC = 0.02;
+  private static final int NUM_MODULES = 4;
+
+  /** Allowance for floating point and the steering bisection */
+  private static final double EPSILON = 1e-6;
+
+  private static final double MAX_DELTA_SPEED =
+      DriveCal.MAX_MODULE_ACCELERATION_METERS_PER_SEC_SQ * DT_SEC;
+  private static final double MAX_STEER_RAD = DriveCal.MAX_MODULE_STEER_RATE_RAD_PER_SEC * DT_SEC;
+
+  /** Long enough to reach any reachable setpoint from any other */
+  private static final int MAX_STEPS = 200;
+
+  private final SwerveSetpointGenerator generator = new SwerveSetpointGenerator();
+  private final double[] prevSpeedMps = new double[NUM_MODULES];
+  private final double[] prevAngleRad = new double[NUM_MODULES];
+
+  /**
+   * Steps the generator towards the desired speeds until it gets there, checking the acceleration
+   * and steering limits on every module every step.
+   *
+   * @return Number of steps taken
+   */
+  private int driveTo(double vxMps, double vyMps, double omegaRadPerSec) {
+    for (int step = 1; step <= MAX_STEPS; step++) {
+      generator.generate(vxMps, vyMps, omegaRadPerSec, DT_SEC);
+      for (int i = 0; i < NUM_MODULES; i++) {
+        double speedMps = generator.getSpeedMetersPerSecond(i);
+        double angleRad = generator.getAngleRad(i);
+
+        double deltaVx =
+            speedMps * Math.cos(angleRad) - prevSpeedMps[i] * Math.cos(prevAngleRad[i]);
+        double deltaVy =
+            speedMps * Math.sin(angleRad) - prevSpeedMps[i] * Math.sin(prevAngleRad[i]);
+        assertTrue(
+            Math.hypot(deltaVx, deltaVy) <= MAX_DELTA_SPEED + EPSILON,
+            "module " + i + " over its acceleration limit on step " + step);
+
+        double steerRad = MathUtil.angleModulus(angleRad - prevAngleRad[i]);
+        assertTrue(
+            Math.abs(steerRad) <= MAX_STEER_RAD + EPSILON,
+            "module " + i + " over its steering limit on step " + step);
+
+        prevSpeedMps[i] = speedMps;
+        prevAngleRad[i] = angleRad;
+      }
+
+      if (Math.abs(generator.getVxMetersPerSecond() - vxMps) < EPSILON
+          && Math.abs(generator.getVyMetersPerSecond() - vyMps) < EPSILON
+          && Math.abs(generator.getOmegaRadPerSecond() - omegaRadPerSec) < EPSILON) {
+        return step;
+      }
+    }
+    return MAX_STEPS + 1;
+  }
+
+  /** Checks each module's velocity vector is the one the chassis speeds call for */
+  private void assertModulesMatch(double vxMps, double vyMps, double omegaRadPerSec) {
+    for (int i = 0; i < NUM_MODULES; i++) {
+      double moduleVx = vxMps - omegaRadPerSec * DriveConstants.MODULE_LOCATIONS[i].getY();
+      double moduleVy = vyMps + omegaRadPerSec * DriveConstants.MODULE_LOCATIONS[i].getX();
+      double speedMps = generator.getSpeedMetersPerSecond(i);
+      double angleRad = generator.getAngleRad(i);
+      assertEquals(moduleVx, speedMps * Math.cos(angleRad), 1e-4, "module " + i + " vx");
+      assertEquals(moduleVy, speedMps * Math.sin(angleRad), 1e-4, "module " + i + " vy");
+    }
+  }
+
+  @Test
+  void stepInputConvergesWithinLimits() {
+    assertTrue(driveTo(3.0, 0.0, 0.0) <= MAX_STEPS, "never reached the translation");
+    assertModulesMatch(3.0, 0.0, 0.0);
+
+    assertTrue(driveTo(1.0, 1.5, 2.0) <= MAX_STEPS, "never reached the translation and rotation");
+    assertModulesMatch(1.0, 1.5, 2.0);
+
+    assertTrue(driveTo(0.0, 0.0, 0.0) <= MAX_STEPS, "never stopped");
+    assertModulesMatch(0.0, 0.0, 0.0);
+  }
+
+  @Test
+  void accelerationLimitSetsTimeToSpeed() {
+    // From rest straight ahead, so steering never holds it back
+    driveTo(0.0, 0.0, 0.0);
+    double speedMps = 2.0;
+    int steps = driveTo(speedMps, 0.0, 0.0);
+    assertEquals(Math.ceil(speedMps / MAX_DELTA_SPEED - EPSILON), steps);
+  }
+
+  @Test
+  void reversingFlipsInsteadOfSteering() {
+    driveTo(2.0, 0.0, 0.0);
+    driveTo(-2.0, 0.0, 0.0);
+    for (int i = 0; i < NUM_MODULES; i++) {
+      assertEquals(0.0, MathUtil.angleModulus(generator.getAngleRad(i)), 1e-6);
+      assertEquals(-2.0, generator.getSpeedMetersPerSecond(i), 1e-6);
+    }
+  }
+
+  @Test
+  void turnsOverNinetyDegreesFlip() {
+    // Stopped with the wheels straight ahead. On the move the modules track a gradual change of
+    // direction, so the flip only shows up when a module has to pick a new direction.
+    driveTo(2.0, 0.0, 0.0);
+    driveTo(0.0, 0.0, 0.0);
+    // 120 degrees away is 60 degrees away reversed
+    double directionRad = Math.toRadians(120.0);
+    driveTo(2.0 * Math.cos(directionRad), 2.0 * Math.sin(directionRad), 0.0);
+    for (int i = 0; i < NUM_MODULES; i++) {
+      assertEquals(
+          Math.toRadians(-60.0), MathUtil.angleModulus(generator.getAngleRad(i)), 1e-6);
+      assertEquals(-2.0, generator.getSpeedMetersPerSecond(i), 1e-6);
+    }
+  }
+
+  @Test
+  void turnsUnderNinetyDegreesSteer() {
+    driveTo(2.0, 0.0, 0.0);
+    driveTo(0.0, 0.0, 0.0);
+    double directionRad = Math.toRadians(60.0);
+    driveTo(2.0 * Math.cos(directionRad), 2.0 * Math.sin(directionRad), 0.0);
+    for (int i = 0; i < NUM_MODULES; i++) {
+      assertEquals(directionRad, MathUtil.angleModulus(generator.getAngleRad(i)), 1e-6);
+      assertEquals(2.0, generator.getSpeedMetersPerSecond(i), 1e-6);
+    }
+  }
+}